@@ -10,10 +10,17 @@ class TextAggregator:
         self.char_threshold = char_threshold
         self.time_threshold = time_threshold
         self.last_send = time.time()
+        # Stage timestamps of the buffered chunk, epoch ms (audio one is stamped by the backend)
+        self.first_audio_at = None
+        self.first_text_at = None
 
-    async def add(self, text: str, metadata: dict):
-        if text:
+    async def add(self, text: str, metadata: dict, audio_received_at=None):
+        if text and text.strip():
             self.buffer.append(text)
+            if self.first_text_at is None:
+                self.first_text_at = int(time.time() * 1000)
+            if audio_received_at and (self.first_audio_at is None or audio_received_at < self.first_audio_at):
+                self.first_audio_at = audio_received_at
             logger.debug("Aggregator: added text '%s' (buffer count: %d)", text, len(self.buffer))
         now = time.time()
         total = sum(len(s) for s in self.buffer)
@@ -36,7 +43,14 @@ class TextAggregator:
         logger.debug("Flushing %d text segments: '%s'", len(self.buffer), chunk)
         self.buffer = []
         self.last_send = time.time()
-        
+        timing = {
+            "audioReceivedAt": self.first_audio_at,
+            "transcribedAt": self.first_text_at,
+            "flushedAt": int(self.last_send * 1000),
+        }
+        self.first_audio_at = None
+        self.first_text_at = None
+
         logger.debug("Sending to backend...")
-        await self.send_cb(chunk, metadata)
+        await self.send_cb(chunk, metadata, timing)
         logger.debug("Sent to backend successfully")
@@ -2,6 +2,8 @@ import asyncio
 import json
 import base64
 import logging
+import uuid
+from collections import OrderedDict, deque
 from typing import Optional
 from fastapi import WebSocket, WebSocketDisconnect
 from app.audio_buffer import AudioBufferManager
@@ -9,7 +11,7 @@ from app.aggregator import TextAggregator
 from app.vad import SileroVAD
 from app.vosk_model import VoskManager
 from app.whisper_model import WhisperManager
-from config import MODEL
+from config import MODEL, OUTBOX_LIMIT
 
 logger = logging.getLogger(__name__)
 
@@ -19,6 +21,9 @@ class STTService:
         self.vad = SileroVAD()
         self.model = WhisperManager() if MODEL == "Whisper" else VoskManager()
         self.sessions = {}  # key: (clientId, eventId)
+        # Sent but not acknowledged final_text, by streamId: deque of (seq, json)
+        self.outbox = OrderedDict()
+        self.outbox_size = 0
         self.backend_ws: Optional[WebSocket] = None
         self._lock = asyncio.Lock()
 
@@ -32,6 +37,7 @@ class STTService:
             await websocket.accept()
             self.backend_ws = websocket
             logger.info("Backend connected successfully")
+            await self._resend_outbox(websocket)
 
         try:
             await self.listen_loop(websocket)
@@ -59,6 +65,11 @@ class STTService:
                 message = await websocket.receive_text()
                 data = json.loads(message)
                 msg_type = data.get("type", "audio")
+
+                if msg_type == "ack":
+                    self._ack(data.get("streamId"), data.get("seq"))
+                    continue
+
                 client_id = data.get("clientId")
                 event_id = data.get("eventId")
 
@@ -79,8 +90,13 @@ class STTService:
                     if key not in self.sessions:
                         self.sessions[key] = {
                             "audio_buffer": AudioBufferManager(self.vad),
-                            "aggregator": TextAggregator(lambda text, meta: self.send_to_backend(text, meta)),
-                            "meta": {"clientId": client_id, "eventId": event_id}
+                            "aggregator": TextAggregator(
+                                lambda text, meta, timing: self.send_to_backend(text, meta, timing)),
+                            # Earliest backend receive time of audio not yet transcribed
+                            "audio_received_at": None,
+                            # streamId + seq identify every final_text of this session
+                            "meta": {"clientId": client_id, "eventId": event_id,
+                                     "streamId": uuid.uuid4().hex, "seq": 0}
                         }
 
                     session = self.sessions[key]
@@ -88,12 +104,20 @@ class STTService:
                     agg: TextAggregator = session["aggregator"]
 
                     buf.append(audio_bytes)
+                    # Only sampled sessions send a traceparent; it is echoed in final_text
+                    traceparent = data.get("traceparent")
+                    if traceparent:
+                        session["meta"]["traceparent"] = traceparent
+                    if session["audio_received_at"] is None:
+                        session["audio_received_at"] = data.get("receivedAt")
                     if buf.should_transcribe():
                         pcm = buf.pop_chunk()
+                        audio_received_at = session["audio_received_at"]
+                        session["audio_received_at"] = None
                         result = self.model.transcribe(pcm)
                         text = result.get("text", "").strip()
                         if text:
-                            await agg.add(text, session["meta"])
+                            await agg.add(text, session["meta"], audio_received_at)
 
                 elif msg_type in ("disconnect", "end"):
                     logger.debug(f"Client {client_id}/{event_id} disconnected -> cleaning up")
@@ -117,7 +141,7 @@ class STTService:
                 res = self.model.transcribe(pcm)
                 text = res.get("text", "").strip()
                 if text:
-                    await agg.add(text, session["meta"])
+                    await agg.add(text, session["meta"], session["audio_received_at"])
             await agg.flush(session["meta"])
             logger.debug("Session %s cleaned up successfully", key)
         except Exception as e:
@@ -129,22 +153,67 @@ class STTService:
         for key in keys:
             await self._cleanup_session(key)
 
-    async def send_to_backend(self, text: str, metadata: dict):
+    async def send_to_backend(self, text: str, metadata: dict, timing: Optional[dict] = None):
+        metadata["seq"] += 1
         payload = {
             "type": "final_text",
             "clientId": metadata["clientId"],
             "eventId": metadata["eventId"],
+            "streamId": metadata["streamId"],
+            "seq": metadata["seq"],
             "text": text,
         }
+        if metadata.get("traceparent"):
+            payload["traceparent"] = metadata["traceparent"]
+        if timing:
+            payload["timing"] = {k: v for k, v in timing.items() if v is not None}
+        message = json.dumps(payload, ensure_ascii=False)
+        # Kept until the backend acks it, so a reconnect resends instead of losing it
+        self._store(metadata["streamId"], metadata["seq"], message)
+
         if not self.backend_ws:
-            logger.warning("Backend WS not connected, skipping send")
+            logger.warning("Backend WS not connected, final_text kept for resend")
             return
 
         try:
-            await self.backend_ws.send_text(json.dumps(payload, ensure_ascii=False))
+            await self.backend_ws.send_text(message)
             logger.debug("Sent transcription to backend: %s", payload)
         except Exception as e:
             logger.error("Failed to send to backend: %s", e)
             async with self._lock:
                 if self.backend_ws:
                     self.backend_ws = None
+
+    def _store(self, stream_id: str, seq: int, message: str):
+        self.outbox.setdefault(stream_id, deque()).append((seq, message))
+        self.outbox_size += 1
+        while self.outbox_size > OUTBOX_LIMIT:
+            oldest_stream, pending = next(iter(self.outbox.items()))
+            dropped_seq, _ = pending.popleft()
+            self.outbox_size -= 1
+            if not pending:
+                del self.outbox[oldest_stream]
+            logger.warning("Outbox full, dropped final_text %s/%s", oldest_stream, dropped_seq)
+
+    def _ack(self, stream_id: Optional[str], seq):
+        pending = self.outbox.get(stream_id)
+        if pending is None or not isinstance(seq, int):
+            return
+        # Acks are cumulative: everything up to seq has been accepted
+        while pending and pending[0][0] <= seq:
+            pending.popleft()
+            self.outbox_size -= 1
+        if not pending:
+            del self.outbox[stream_id]
+
+    async def _resend_outbox(self, websocket: WebSocket):
+        if not self.outbox_size:
+            return
+        logger.info("Resending %d unacknowledged final_text messages", self.outbox_size)
+        try:
+            for pending in list(self.outbox.values()):
+                for _, message in list(pending):
+                    await websocket.send_text(message)
+        except Exception as e:
+            # Whatever is left stays in the outbox for the next connection
+            logger.error("Failed to resend outbox: %s", e)
@@ -30,3 +30,6 @@ SILENCE_AFTER_S = float(os.getenv("SILENCE_AFTER_S", "0.5"))
 CHAR_THRESHOLD = int(os.getenv("CHAR_THRESHOLD", "1200"))
 TIME_THRESHOLD = float(os.getenv("TIME_THRESHOLD", "20.0"))
 
+
+# Unacknowledged final_text messages kept for resend after a backend reconnect
+OUTBOX_LIMIT = int(os.getenv("OUTBOX_LIMIT", "1000"))
@@ -0,0 +1,58 @@
+package com.rybki.spring_boot.client;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.rybki.spring_boot.model.domain.Idea;
+import com.rybki.spring_boot.model.dto.GigaChatResponseDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Разбор ответа GigaChat: вырезание JSON из markdown и десериализация идей
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IdeaExtractorClientBenchmark {
+
+    private static final String IDEAS_JSON = """
+        {"status": "success", "ideas": [
+          {"id": "idea_1", "title": "Запустить бета-тест мобильного приложения",
+           "description": "Пригласить сто активных пользователей и собрать отзывы за две недели"},
+          {"id": "idea_2", "title": "Автоматизировать отчёты по продажам",
+           "description": "Еженедельная выгрузка из CRM в общую таблицу без ручной работы"},
+          {"id": "idea_3", "title": "Провести хакатон для команды",
+           "description": "Два дня на прототипы идей, которые не попали в план квартала"}
+        ], "meta": {"language": "ru"}}
+        """;
+
+    private IdeaExtractorClient client;
+    private String markdown;
+    private GigaChatResponseDto response;
+
+    @Setup
+    public void setUp() {
+        // parseResponse использует только собственный ObjectMapper — зависимости не нужны
+        client = new IdeaExtractorClient(null, null, null, null, null, null, null);
+        markdown = "Вот найденные идеи:\n```json\n" + IDEAS_JSON + "```\n";
+        response = new GigaChatResponseDto(
+            List.of(new GigaChatResponseDto.Choice(new GigaChatResponseDto.Message("assistant", markdown), 0, "stop")),
+            0, "GigaChat", "chat.completion", null);
+    }
+
+    @Benchmark
+    public String extractJsonFromMarkdown() {
+        return IdeaExtractorClient.extractJsonFromMarkdown(markdown);
+    }
+
+    @Benchmark
+    public List<Idea> parseResponse() {
+        return client.parseResponse(response).block();
+    }
+}
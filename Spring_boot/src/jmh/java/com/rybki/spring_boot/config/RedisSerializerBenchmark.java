@@ -0,0 +1,81 @@
+package com.rybki.spring_boot.config;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.rybki.spring_boot.model.domain.redis.Event;
+import com.rybki.spring_boot.model.domain.redis.EventStatus;
+import com.rybki.spring_boot.model.domain.redis.Idea;
+import com.rybki.spring_boot.model.domain.redis.IdeaStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+/**
+ * Сериализация значений Redis (та же конфигурация, что у RedisTemplate): запись и чтение Event и Idea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RedisSerializerBenchmark {
+
+    private GenericJackson2JsonRedisSerializer serializer;
+    private Event event;
+    private Idea idea;
+    private byte[] eventBytes;
+    private byte[] ideaBytes;
+
+    @Setup
+    public void setUp() {
+        serializer = RedisConfig.valueSerializer();
+
+        final Map<String, Object> metadata = new HashMap<>();
+        metadata.put("ideaExtractor", "gigachat");
+        event = Event.builder()
+            .eventId("3f2b8c1e-9d4a-4e5f-8b7c-6a1d2e3f4a5b")
+            .creatorClientId("client-1")
+            .status(EventStatus.ACTIVE)
+            .createdAt(Instant.now())
+            .metadata(metadata)
+            .build();
+        idea = Idea.builder()
+            .ideaId("8a1f0c52-3b6e-4d7a-9f10-2c4b5e6d7f80")
+            .eventId(event.getEventId())
+            .clientId("client-1")
+            .title("Автоматизировать отчёты по продажам")
+            .description("Еженедельная выгрузка из CRM в общую таблицу без ручной работы")
+            .status(IdeaStatus.PENDING)
+            .createdAt(Instant.now())
+            .sourceText("Давайте автоматизируем отчёты по продажам, чтобы не собирать их руками каждую неделю")
+            .build();
+        eventBytes = serializer.serialize(event);
+        ideaBytes = serializer.serialize(idea);
+    }
+
+    @Benchmark
+    public byte[] serializeEvent() {
+        return serializer.serialize(event);
+    }
+
+    @Benchmark
+    public Object deserializeEvent() {
+        return serializer.deserialize(eventBytes);
+    }
+
+    @Benchmark
+    public Object roundTripIdea() {
+        return serializer.deserialize(serializer.serialize(idea));
+    }
+
+    @Benchmark
+    public Object deserializeIdea() {
+        return serializer.deserialize(ideaBytes);
+    }
+}
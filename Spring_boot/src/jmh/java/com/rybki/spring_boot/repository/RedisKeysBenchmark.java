@@ -0,0 +1,36 @@
+package com.rybki.spring_boot.repository;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Построение ключей Redis — на каждую операцию репозиториев
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RedisKeysBenchmark {
+
+    public String eventId = "3f2b8c1e-9d4a-4e5f-8b7c-6a1d2e3f4a5b";
+    public String ideaId = "8a1f0c52-3b6e-4d7a-9f10-2c4b5e6d7f80";
+
+    @Benchmark
+    public String eventKey() {
+        return RedisKeys.eventKey(eventId);
+    }
+
+    @Benchmark
+    public void eventIdeaKeys(final Blackhole bh) {
+        bh.consume(RedisKeys.eventPendingIdeasKey(eventId));
+        bh.consume(RedisKeys.eventIdeaMentionsKey(eventId));
+        bh.consume(RedisKeys.ideaKey(ideaId));
+        bh.consume(RedisKeys.ideaVotesKey(ideaId));
+    }
+}
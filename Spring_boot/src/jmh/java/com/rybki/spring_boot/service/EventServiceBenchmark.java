@@ -0,0 +1,149 @@
+package com.rybki.spring_boot.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.rybki.spring_boot.model.domain.BulkJoinEventRequest;
+import com.rybki.spring_boot.model.domain.BulkJoinEventResponse;
+import com.rybki.spring_boot.model.domain.CreateEventRequest;
+import com.rybki.spring_boot.model.domain.CreateEventResponse;
+import com.rybki.spring_boot.model.domain.JoinEventRequest;
+import com.rybki.spring_boot.model.domain.JoinEventResponse;
+import com.rybki.spring_boot.model.domain.redis.Event;
+import com.rybki.spring_boot.repository.RedisEventRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+/**
+ * Сколько create/join в секунду выдерживает один поток event-loop — это занятость event-loop,
+ * а не пропускная способность на ядро.
+ * <p>
+ * *OnEventLoop — как было до перехода на Mono: вызовы Redis идут прямо в потоке запроса,
+ * и он простаивает всё время ответа Redis. *Reactive — как сейчас: поток только подписывается,
+ * а Redis ждут до IN_FLIGHT потоков boundedElastic. joinBulk — те же участники одним запросом /join/bulk.
+ * Redis заменён картой с задержкой redisLatencyMicros на каждую операцию.
+ * <p>
+ * Бюджет потоков у вариантов разный: *Reactive работает не на одном @Threads(1), а ещё на пуле
+ * boundedElastic. Ожидание Redis (parkNanos) процессор не занимает, поэтому при redisLatencyMicros=250
+ * выигрыш *Reactive — освобождённый event-loop, а не лишние ядра. При redisLatencyMicros=0 ожидания нет:
+ * *Reactive выполняет работу репозитория и на других ядрах, и «на ядро» варианты не сравнимы.
+ */
+@State(Scope.Benchmark)
+@Threads(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EventServiceBenchmark {
+
+    // Одновременных запросов на поток (соединения клиентов к одному event-loop)
+    private static final int IN_FLIGHT = 64;
+
+    @Param({"0", "250"})
+    public long redisLatencyMicros;
+
+    private EventService eventService;
+    private String eventId;
+    private final CreateEventRequest createRequest = new CreateEventRequest();
+    private final JoinEventRequest joinRequest = new JoinEventRequest();
+    private final BulkJoinEventRequest bulkRequest = new BulkJoinEventRequest();
+
+    @Setup
+    public void setUp() {
+        eventService = new EventService(new InMemoryEventRepository(redisLatencyMicros), null, null,
+            Duration.ofSeconds(30), Duration.ofDays(7));
+        eventId = eventService.createEventBlocking(createRequest).getEventId();
+        bulkRequest.setCount(IN_FLIGHT);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IN_FLIGHT)
+    public void createOnEventLoop(final Blackhole blackhole) {
+        for (int i = 0; i < IN_FLIGHT; i++) {
+            blackhole.consume(eventService.createEventBlocking(createRequest));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IN_FLIGHT)
+    public List<CreateEventResponse> createReactive() {
+        return Flux.range(0, IN_FLIGHT)
+            .flatMap(i -> eventService.createEvent(createRequest), IN_FLIGHT)
+            .collectList()
+            .block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IN_FLIGHT)
+    public void joinOnEventLoop(final Blackhole blackhole) {
+        for (int i = 0; i < IN_FLIGHT; i++) {
+            blackhole.consume(eventService.joinEventBlocking(eventId, joinRequest));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IN_FLIGHT)
+    public List<JoinEventResponse> joinReactive() {
+        return Flux.range(0, IN_FLIGHT)
+            .flatMap(i -> eventService.joinEvent(eventId, joinRequest), IN_FLIGHT)
+            .collectList()
+            .block();
+    }
+
+    // Те же IN_FLIGHT участников одним запросом /join/bulk
+    @Benchmark
+    @OperationsPerInvocation(IN_FLIGHT)
+    public BulkJoinEventResponse joinBulk() {
+        return eventService.bulkJoinEvent(eventId, bulkRequest).block();
+    }
+
+    /**
+     * Redis в памяти; каждая операция «ждёт сеть» latencyMicros
+     */
+    static final class InMemoryEventRepository extends RedisEventRepository {
+
+        private final long latencyNanos;
+        private final Map<String, Event> events = new ConcurrentHashMap<>();
+
+        InMemoryEventRepository(final long latencyMicros) {
+            this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        }
+
+        @Override
+        public void createEvent(final Event event) {
+            roundTrip();
+            events.put(event.getEventId(), event);
+        }
+
+        @Override
+        public void addParticipant(final String eventId, final String clientId) {
+            roundTrip();
+        }
+
+        // Как скрипт Redis: один round trip на проверку события и добавление всех участников;
+        // участников не копим — важна стоимость вызова, а не размер множества
+        @Override
+        public JoinResult joinEvent(final String eventId, final List<String> clientIds) {
+            roundTrip();
+            return new JoinResult(events.containsKey(eventId) ? JoinStatus.JOINED : JoinStatus.NOT_FOUND, List.of());
+        }
+
+        private void roundTrip() {
+            if (latencyNanos > 0) {
+                LockSupport.parkNanos(latencyNanos);
+            }
+        }
+    }
+}
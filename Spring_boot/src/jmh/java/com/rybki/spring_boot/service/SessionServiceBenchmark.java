@@ -0,0 +1,61 @@
+package com.rybki.spring_boot.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.rybki.spring_boot.websocket.StubWebSocketSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Поиск сессий при большом числе подключений: по id WS-сессии (каждый фрейм клиента)
+ * и по (eventId, clientId) (каждое уведомление об идее).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SessionServiceBenchmark {
+
+    // Участников в одном событии
+    private static final int EVENT_SIZE = 20;
+
+    @Param({"100", "1000", "10000"})
+    public int sessions;
+
+    private SessionService sessionService;
+    private StubWebSocketSession[] registered;
+
+    @Setup
+    public void setUp() {
+        sessionService = new SessionService();
+        registered = new StubWebSocketSession[sessions];
+        for (int i = 0; i < sessions; i++) {
+            registered[i] = new StubWebSocketSession("session-" + i);
+            sessionService.register(registered[i], "client-" + i, "event-" + i / EVENT_SIZE, null).block();
+        }
+    }
+
+    @Benchmark
+    public Object sessionDataById() {
+        final int i = ThreadLocalRandom.current().nextInt(sessions);
+        return sessionService.getSessionData(registered[i]).block();
+    }
+
+    @Benchmark
+    public Object sessionByEventAndClient() {
+        final int i = ThreadLocalRandom.current().nextInt(sessions);
+        return sessionService.getSession("event-" + i / EVENT_SIZE, "client-" + i).block();
+    }
+
+    @Benchmark
+    public Object sessionsForEvent() {
+        final int i = ThreadLocalRandom.current().nextInt(sessions);
+        return sessionService.getSessionsForEvent("event-" + i / EVENT_SIZE).collectList().block();
+    }
+}
@@ -0,0 +1,50 @@
+package com.rybki.spring_boot.service;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.rybki.spring_boot.util.Base64Util;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Аудио-путь: base64 фрейма PCM16 и JSON-конверт для STT — выполняется на каждый фрейм клиента
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SttRoutingServiceBenchmark {
+
+    // 20/100 мс при 16 кГц PCM16
+    @Param({"640", "3200"})
+    public int frameBytes;
+
+    private SttRoutingService sttRoutingService;
+    private byte[] frame;
+
+    @Setup
+    public void setUp() {
+        sttRoutingService = new SttRoutingService(null, new SimpleMeterRegistry(), 16000, Duration.ofSeconds(10));
+        frame = new byte[frameBytes];
+        ThreadLocalRandom.current().nextBytes(frame);
+    }
+
+    @Benchmark
+    public String base64() {
+        return Base64Util.encode(frame);
+    }
+
+    @Benchmark
+    public String audioEnvelope() throws JsonProcessingException {
+        return sttRoutingService.audioEnvelope("client-1", "event-1", frame, System.currentTimeMillis(), null);
+    }
+}
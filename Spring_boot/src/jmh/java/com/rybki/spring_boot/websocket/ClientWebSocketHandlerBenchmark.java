@@ -0,0 +1,43 @@
+package com.rybki.spring_boot.websocket;
+
+import java.util.concurrent.TimeUnit;
+
+import com.rybki.spring_boot.service.SessionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Разбор и диспетчеризация текстового сообщения клиента.
+ * vote от незарегистрированной сессии проходит разбор JSON, switch по type и поиск сессии,
+ * но не уходит в Redis — меряется ровно обвязка обработчика.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ClientWebSocketHandlerBenchmark {
+
+    @Param({"vote"})
+    public String type;
+
+    private ClientWebSocketHandler handler;
+    private StubWebSocketSession session;
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        handler = new ClientWebSocketHandler(new SessionService(), null, null, null);
+        session = new StubWebSocketSession("bench-session");
+        payload = "{\"type\":\"" + type + "\",\"ideaId\":\"8a1f0c52-3b6e-4d7a-9f10-2c4b5e6d7f80\",\"vote\":\"LIKE\"}";
+    }
+
+    @Benchmark
+    public Object dispatchText() {
+        return handler.handleTextMessage(session, session.text(payload)).block();
+    }
+}
@@ -0,0 +1,100 @@
+package com.rybki.spring_boot.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.HandshakeInfo;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Сессия без сети для бенчмарков: отправка ничего не делает, сообщения создаются в куче
+ */
+public class StubWebSocketSession implements WebSocketSession {
+
+    private final String id;
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    public StubWebSocketSession(final String id) {
+        this.id = id;
+    }
+
+    public WebSocketMessage text(final String payload) {
+        return textMessage(payload);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public HandshakeInfo getHandshakeInfo() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DataBufferFactory bufferFactory() {
+        return DefaultDataBufferFactory.sharedInstance;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Flux<WebSocketMessage> receive() {
+        return Flux.empty();
+    }
+
+    @Override
+    public Mono<Void> send(final Publisher<WebSocketMessage> messages) {
+        return Flux.from(messages).then();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public Mono<Void> close(final CloseStatus status) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<CloseStatus> closeStatus() {
+        return Mono.never();
+    }
+
+    @Override
+    public WebSocketMessage textMessage(final String payload) {
+        return new WebSocketMessage(WebSocketMessage.Type.TEXT,
+            DefaultDataBufferFactory.sharedInstance.wrap(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public WebSocketMessage binaryMessage(final Function<DataBufferFactory, DataBuffer> payloadFactory) {
+        return new WebSocketMessage(WebSocketMessage.Type.BINARY, payloadFactory.apply(bufferFactory()));
+    }
+
+    @Override
+    public WebSocketMessage pingMessage(final Function<DataBufferFactory, DataBuffer> payloadFactory) {
+        return new WebSocketMessage(WebSocketMessage.Type.PING, payloadFactory.apply(bufferFactory()));
+    }
+
+    @Override
+    public WebSocketMessage pongMessage(final Function<DataBufferFactory, DataBuffer> payloadFactory) {
+        return new WebSocketMessage(WebSocketMessage.Type.PONG, payloadFactory.apply(bufferFactory()));
+    }
+}
@@ -0,0 +1,133 @@
+package com.rybki.spring_boot.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Заглушка GigaChat: OAuth и chat/completions. На каждый фрагмент запроса (одиночного или пакетного)
+ * через gigachat-latency возвращает одну идею, в описание которой копирует маркер [seg:N] из нового текста.
+ */
+final class FakeGigaChatServer {
+
+    private static final Pattern FRAGMENT = Pattern.compile("(?m)^### Фрагмент (\\d+)$");
+    private static final Pattern MARKER = Pattern.compile("\\[seg:\\d+]");
+    private static final String NEW_TEXT_HEADER = "#### Новый текст\n";
+
+    private final LoadTestConfig config;
+    private final LoadStats stats;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private DisposableServer server;
+
+    FakeGigaChatServer(final LoadTestConfig config, final LoadStats stats) {
+        this.config = config;
+        this.stats = stats;
+    }
+
+    String start() {
+        server = HttpServer.create()
+            .host("127.0.0.1")
+            .port(0)
+            .route(routes -> routes
+                .post("/oauth", (req, res) -> res
+                    .header("Content-Type", "application/json")
+                    .sendString(Mono.fromCallable(this::token)))
+                .post("/chat", (req, res) -> res
+                    .header("Content-Type", "application/json")
+                    .sendString(req.receive().aggregate().asString()
+                        .map(this::answer)
+                        .delayElement(config.gigachatLatency()))))
+            .bindNow();
+        return "http://127.0.0.1:" + server.port();
+    }
+
+    void stop() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    private String token() throws Exception {
+        return objectMapper.writeValueAsString(Map.of(
+            "access_token", "load-test",
+            "expires_at", System.currentTimeMillis() + 30 * 60_000L
+        ));
+    }
+
+    private String answer(final String body) {
+        stats.gigachatCalls.incrementAndGet();
+        try {
+            final JsonNode messages = objectMapper.readTree(body).path("messages");
+            final String user = messages.path(messages.size() - 1).path("content").asText();
+
+            final ArrayNode ideas = objectMapper.createArrayNode();
+            final boolean batched = FRAGMENT.matcher(user).find();
+            final List<String> fragments = fragments(user);
+            for (int i = 0; i < fragments.size(); i++) {
+                final String text = newText(fragments.get(i));
+                final Matcher marker = MARKER.matcher(text);
+                if (!marker.find()) {
+                    continue;
+                }
+                final String title = text.substring(0, marker.start()).strip();
+                final ObjectNode idea = ideas.addObject()
+                    .put("id", "idea_" + (i + 1))
+                    .put("title", title)
+                    .put("description", title + " " + marker.group())
+                    .put("category", "load-test");
+                if (batched) {
+                    idea.put("fragment", i + 1);
+                }
+            }
+
+            final ObjectNode content = objectMapper.createObjectNode().put("status", "success");
+            content.set("ideas", ideas);
+
+            final ObjectNode response = objectMapper.createObjectNode()
+                .put("created", System.currentTimeMillis() / 1000)
+                .put("model", "GigaChat")
+                .put("object", "chat.completion");
+            response.putArray("choices").addObject()
+                .put("index", 0)
+                .put("finish_reason", "stop")
+                .putObject("message")
+                .put("role", "assistant")
+                .put("content", content.toString());
+            return response.toString();
+        } catch (final Exception e) {
+            throw new IllegalStateException("Bad GigaChat request", e);
+        }
+    }
+
+    // Пакетный запрос делим по заголовкам фрагментов; одиночный — один фрагмент
+    private static List<String> fragments(final String user) {
+        final List<String> result = new ArrayList<>();
+        final Matcher matcher = FRAGMENT.matcher(user);
+        int start = -1;
+        while (matcher.find()) {
+            if (start >= 0) {
+                result.add(user.substring(start, matcher.start()));
+            }
+            start = matcher.end();
+        }
+        result.add(start >= 0 ? user.substring(start) : user);
+        return result;
+    }
+
+    // Маркеры из раздела контекста относятся к прошлым сегментам
+    private static String newText(final String fragment) {
+        final int index = fragment.indexOf(NEW_TEXT_HEADER);
+        return (index >= 0 ? fragment.substring(index + NEW_TEXT_HEADER.length()) : fragment).strip();
+    }
+}
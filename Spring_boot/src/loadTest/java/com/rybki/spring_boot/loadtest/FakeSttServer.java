@@ -0,0 +1,171 @@
+package com.rybki.spring_boot.loadtest;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Заглушка STT: принимает аудио от бэкенда и на каждые segment-seconds аудио потока
+ * через stt-latency отвечает final_text по протоколу настоящего сервиса (streamId/seq, timing, traceparent).
+ * <p>
+ * Текст содержит маркер [seg:N], где N — номер последнего фрейма сегмента: клиент записал
+ * в первые 4 байта каждого фрейма его номер и по маркеру находит момент отправки.
+ */
+final class FakeSttServer {
+
+    static final List<String> WORDS = List.of(
+        "запустить", "пилотный", "проект", "мобильного", "приложения", "автоматизировать", "отчёты",
+        "продажам", "хакатон", "команды", "клиентский", "опрос", "программу", "лояльности", "новый",
+        "сервис", "доставки", "партнёрами", "регионах", "обучение", "сотрудников", "аналитику",
+        "витрину", "данных", "чат-бот", "поддержки", "рассылку", "подписчикам", "скидку", "студентам",
+        "бета-тест", "интеграцию", "платёжной", "системой", "офлайн-режим", "рейтинг", "отзывов",
+        "геймификацию", "онбординг", "маркетплейс", "подкаст", "вебинар", "конкурс", "курьеров",
+        "склад", "прогноз", "спроса", "ассортимент", "упаковку", "переработку", "экономию", "энергии"
+    );
+
+    private final LoadTestConfig config;
+    private final LoadStats stats;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+
+    private DisposableServer server;
+
+    FakeSttServer(final LoadTestConfig config, final LoadStats stats) {
+        this.config = config;
+        this.stats = stats;
+    }
+
+    String start() {
+        server = HttpServer.create()
+            .host("127.0.0.1")
+            .port(0)
+            .route(routes -> routes.ws("/ws/stt", (in, out) -> {
+                final Sinks.Many<String> outbound = Sinks.many().unicast().onBackpressureBuffer();
+                final Mono<Void> receive = in.receive().asString()
+                    .doOnNext(message -> onMessage(message, outbound))
+                    .then();
+                return Mono.when(receive, out.sendString(outbound.asFlux()).then());
+            }))
+            .bindNow();
+        return "ws://127.0.0.1:" + server.port() + "/ws/stt";
+    }
+
+    void stop() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    private void onMessage(final String message, final Sinks.Many<String> outbound) {
+        try {
+            final JsonNode node = objectMapper.readTree(message);
+            final String type = node.path("type").asText("audio");
+            final String clientId = node.path("clientId").asText();
+            final String eventId = node.path("eventId").asText();
+            switch (type) {
+                case "audio" -> onAudio(node, clientId, eventId, outbound);
+                case "disconnect", "end" -> {
+                    final Stream stream = streams.remove(eventId + "/" + clientId);
+                    if (stream != null) {
+                        stream.flush(outbound);
+                    }
+                }
+                default -> {
+                    // ack и прочее заглушке не нужны
+                }
+            }
+        } catch (final Exception e) {
+            stats.clientErrors.incrementAndGet();
+        }
+    }
+
+    private void onAudio(final JsonNode node, final String clientId, final String eventId,
+                         final Sinks.Many<String> outbound) {
+        final byte[] pcm = Base64.getDecoder().decode(node.path("audio").asText());
+        stats.framesAtStt.incrementAndGet();
+        final Stream stream = streams.computeIfAbsent(eventId + "/" + clientId, k -> new Stream(clientId, eventId));
+        stream.append(ByteBuffer.wrap(pcm).getInt(), node.path("receivedAt").asLong(0),
+            node.path("traceparent").asText(null), outbound);
+    }
+
+    private void emit(final Sinks.Many<String> outbound, final String json) {
+        Mono.delay(config.sttLatency())
+            .subscribe(t -> {
+                stats.finalTexts.incrementAndGet();
+                outbound.emitNext(json, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+            });
+    }
+
+    private final class Stream {
+        private final String clientId;
+        private final String eventId;
+        private final String streamId = UUID.randomUUID().toString();
+        private long seq;
+        private int frames;
+        private int lastFrame;
+        private long firstReceivedAt;
+        private String traceparent;
+
+        private Stream(final String clientId, final String eventId) {
+            this.clientId = clientId;
+            this.eventId = eventId;
+        }
+
+        private synchronized void append(final int frame, final long receivedAt, final String traceparent,
+                                         final Sinks.Many<String> outbound) {
+            if (frames == 0) {
+                firstReceivedAt = receivedAt;
+            }
+            frames++;
+            lastFrame = frame;
+            if (traceparent != null) {
+                this.traceparent = traceparent;
+            }
+            if (frames >= config.framesPerSegment()) {
+                flush(outbound);
+            }
+        }
+
+        private synchronized void flush(final Sinks.Many<String> outbound) {
+            if (frames == 0) {
+                return;
+            }
+            final ObjectNode payload = objectMapper.createObjectNode()
+                .put("type", "final_text")
+                .put("clientId", clientId)
+                .put("eventId", eventId)
+                .put("streamId", streamId)
+                .put("seq", ++seq)
+                .put("text", sentence() + " [seg:" + lastFrame + "]");
+            payload.putObject("timing").put("audioReceivedAt", firstReceivedAt);
+            if (traceparent != null) {
+                payload.put("traceparent", traceparent);
+            }
+            frames = 0;
+            emit(outbound, payload.toString());
+        }
+
+        // Разные случайные слова — чтобы идеи не склеивались дедупликацией как похожие
+        private String sentence() {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final StringBuilder sb = new StringBuilder("Давайте");
+            for (int i = 0; i < 6; i++) {
+                sb.append(' ').append(WORDS.get(random.nextInt(WORDS.size())));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.rybki.spring_boot.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Куча и GC процесса за время прогона. Бэкенд, заглушки и клиенты живут в одной JVM,
+ * так что цифры — верхняя оценка для самого бэкенда.
+ */
+final class JvmSampler {
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "loadtest-jvm-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, long[]> gcAtStart = new LinkedHashMap<>();
+    private volatile long heapPeak;
+    private long heapSum;
+    private long samples;
+
+    void start() {
+        for (final GarbageCollectorMXBean gc : collectors) {
+            gcAtStart.put(gc.getName(), new long[] {gc.getCollectionCount(), gc.getCollectionTime()});
+        }
+        timer.scheduleAtFixedRate(this::sample, 0, 1, TimeUnit.SECONDS);
+    }
+
+    private synchronized void sample() {
+        final long used = memory.getHeapMemoryUsage().getUsed();
+        heapPeak = Math.max(heapPeak, used);
+        heapSum += used;
+        samples++;
+    }
+
+    void stop() {
+        timer.shutdownNow();
+    }
+
+    synchronized long heapPeakBytes() {
+        return heapPeak;
+    }
+
+    synchronized long heapAverageBytes() {
+        return samples == 0 ? 0 : heapSum / samples;
+    }
+
+    long heapMaxBytes() {
+        return memory.getHeapMemoryUsage().getMax();
+    }
+
+    /**
+     * Сборщик → {число сборок, суммарная пауза в мс} с момента start()
+     */
+    Map<String, long[]> gcSinceStart() {
+        final Map<String, long[]> result = new LinkedHashMap<>();
+        for (final GarbageCollectorMXBean gc : collectors) {
+            final long[] start = gcAtStart.getOrDefault(gc.getName(), new long[2]);
+            result.put(gc.getName(), new long[] {
+                gc.getCollectionCount() - start[0],
+                gc.getCollectionTime() - start[1]
+            });
+        }
+        return result;
+    }
+}
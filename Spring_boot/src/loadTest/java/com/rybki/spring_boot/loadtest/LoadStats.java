@@ -0,0 +1,47 @@
+package com.rybki.spring_boot.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчики и задержки прогона; общие для клиентов и заглушек
+ */
+final class LoadStats {
+
+    final AtomicLong clientsConnected = new AtomicLong();
+    final AtomicLong clientErrors = new AtomicLong();
+    final AtomicLong framesSent = new AtomicLong();
+    final AtomicLong framesAtStt = new AtomicLong();
+    final AtomicLong finalTexts = new AtomicLong();
+    final AtomicLong gigachatCalls = new AtomicLong();
+    final AtomicLong ideasReceived = new AtomicLong();
+    final AtomicLong ownIdeas = new AtomicLong();
+    final AtomicLong mentionsReceived = new AtomicLong();
+
+    // Время до идеи у автора: от отправки последнего аудио-фрейма сегмента, микросекунды
+    private final List<Long> timeToIdeaMicros = new ArrayList<>();
+
+    void recordTimeToIdea(final long micros) {
+        synchronized (timeToIdeaMicros) {
+            timeToIdeaMicros.add(micros);
+        }
+    }
+
+    List<Long> sortedTimeToIdea() {
+        synchronized (timeToIdeaMicros) {
+            final List<Long> copy = new ArrayList<>(timeToIdeaMicros);
+            Collections.sort(copy);
+            return copy;
+        }
+    }
+
+    static long percentile(final List<Long> sorted, final double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        final int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
@@ -0,0 +1,53 @@
+package com.rybki.spring_boot.loadtest;
+
+import java.time.Duration;
+
+/**
+ * Параметры прогона; задаются системными свойствами loadtest.* (./gradlew loadTest -Ploadtest.clients=2000)
+ */
+record LoadTestConfig(
+    int clients,
+    int clientsPerEvent,
+    Duration duration,
+    Duration rampUp,
+    Duration drain,
+    int frameMillis,
+    int segmentSeconds,
+    Duration sttLatency,
+    Duration gigachatLatency,
+    String redisHost,
+    int redisPort
+) {
+
+    static final int SAMPLE_RATE = 16000;
+    static final int BYTES_PER_SAMPLE = 2;
+
+    static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig(
+            Integer.getInteger("loadtest.clients", 1000),
+            Integer.getInteger("loadtest.clients-per-event", 10),
+            Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 60)),
+            Duration.ofSeconds(Long.getLong("loadtest.ramp-up-seconds", 10)),
+            Duration.ofSeconds(Long.getLong("loadtest.drain-seconds", 20)),
+            Integer.getInteger("loadtest.frame-ms", 100),
+            Integer.getInteger("loadtest.segment-seconds", 5),
+            Duration.ofMillis(Long.getLong("loadtest.stt-latency-ms", 300)),
+            Duration.ofMillis(Long.getLong("loadtest.gigachat-latency-ms", 1500)),
+            System.getProperty("loadtest.redis-host", System.getenv().getOrDefault("REDIS_HOST", "localhost")),
+            Integer.getInteger("loadtest.redis-port",
+                Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379")))
+        );
+    }
+
+    int frameBytes() {
+        return SAMPLE_RATE * BYTES_PER_SAMPLE * frameMillis / 1000;
+    }
+
+    int framesPerClient() {
+        return (int) (duration.toMillis() / frameMillis);
+    }
+
+    int framesPerSegment() {
+        return segmentSeconds * 1000 / frameMillis;
+    }
+}
@@ -0,0 +1,183 @@
+package com.rybki.spring_boot.loadtest;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rybki.spring_boot.App;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Нагрузочный прогон на одной машине: бэкенд поднимается в этом же процессе, STT и GigaChat
+ * заменены заглушками, Redis — настоящий (docker compose up redis).
+ * <p>
+ * Клиенты группами по clients-per-event создают событие и присоединяются к нему, стримят
+ * PCM по /ws/client и ждут свои идеи. В конце печатается пропускная способность, p50/p99 времени
+ * до идеи, куча/GC и потери по пути.
+ * <pre>
+ * ./gradlew loadTest -Ploadtest.clients=2000 -Ploadtest.duration-seconds=120
+ * </pre>
+ */
+public final class LoadTestMain {
+
+    private LoadTestMain() {
+    }
+
+    public static void main(final String[] args) {
+        final LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        final LoadStats stats = new LoadStats();
+
+        final FakeSttServer stt = new FakeSttServer(config, stats);
+        final FakeGigaChatServer gigachat = new FakeGigaChatServer(config, stats);
+        final String sttUrl = stt.start();
+        final String gigachatUrl = gigachat.start();
+
+        final ConfigurableApplicationContext context = new SpringApplicationBuilder(App.class)
+            .properties(appProperties(config, sttUrl, gigachatUrl))
+            .run(args);
+        final int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final ConnectionProvider connections = ConnectionProvider.builder("loadtest")
+            .maxConnections(Math.max(100, config.clients()))
+            .pendingAcquireMaxCount(-1)
+            .build();
+        final WebClient http = WebClient.builder()
+            .baseUrl("http://127.0.0.1:" + port)
+            .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+            .build();
+        final WebSocketClient ws = new ReactorNettyWebSocketClient();
+        final URI wsUri = URI.create("ws://127.0.0.1:" + port + "/ws/client");
+
+        final JvmSampler jvm = new JvmSampler();
+        jvm.start();
+        final long startedAt = System.nanoTime();
+
+        final int events = (config.clients() + config.clientsPerEvent() - 1) / config.clientsPerEvent();
+        final Duration step = config.rampUp().dividedBy(Math.max(1, events));
+        Flux.range(0, events)
+            .delayElements(step)
+            .flatMap(event -> {
+                final int size = Math.min(config.clientsPerEvent(),
+                    config.clients() - event * config.clientsPerEvent());
+                return runEvent(size, () -> new VirtualClient(config, stats, http, ws, wsUri, objectMapper), stats);
+            }, Integer.MAX_VALUE)
+            .blockLast(config.rampUp().plus(config.duration()).plus(config.drain()).plus(Duration.ofMinutes(1)));
+
+        final double elapsedSeconds = (System.nanoTime() - startedAt) / 1e9;
+        jvm.stop();
+
+        report(config, stats, jvm, context.getBean(MeterRegistry.class), elapsedSeconds);
+
+        context.close();
+        stt.stop();
+        gigachat.stop();
+        connections.dispose();
+        System.exit(0);
+    }
+
+    // Первый клиент создаёт событие, остальные присоединяются к нему
+    private static Mono<Void> runEvent(final int size, final Supplier<VirtualClient> clients, final LoadStats stats) {
+        final VirtualClient host = clients.get();
+        return host.create()
+            .flatMap(owner -> Flux.range(0, size)
+                .flatMap(i -> {
+                    if (i == 0) {
+                        return host.run(owner).onErrorResume(e -> failed(stats));
+                    }
+                    final VirtualClient guest = clients.get();
+                    return guest.join(owner.eventId()).flatMap(guest::run).onErrorResume(e -> failed(stats));
+                }, Integer.MAX_VALUE)
+                .then())
+            .onErrorResume(e -> failed(stats));
+    }
+
+    private static Mono<Void> failed(final LoadStats stats) {
+        stats.clientErrors.incrementAndGet();
+        return Mono.empty();
+    }
+
+    private static Map<String, Object> appProperties(final LoadTestConfig config, final String sttUrl,
+                                                     final String gigachatUrl) {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("stt.url", sttUrl);
+        properties.put("gigachat.oauth.url", gigachatUrl + "/oauth");
+        properties.put("gigachat.api.url", gigachatUrl + "/chat");
+        properties.put("gigachat.auth.key", "bG9hZC10ZXN0");
+        properties.put("spring.data.redis.host", config.redisHost());
+        properties.put("spring.data.redis.port", config.redisPort());
+        // Лог на каждый фрагмент при тысячах клиентов сам становится нагрузкой
+        properties.put("logging.level.com.rybki", "WARN");
+        return properties;
+    }
+
+    private static void report(final LoadTestConfig config, final LoadStats stats, final JvmSampler jvm,
+                               final MeterRegistry registry, final double elapsedSeconds) {
+        final List<Long> latencies = stats.sortedTimeToIdea();
+        final long segments = stats.finalTexts.get();
+        final long framesSent = stats.framesSent.get();
+
+        final StringBuilder out = new StringBuilder();
+        out.append("\n===== Load test: ").append(config).append(" =====\n");
+        line(out, "elapsed, s", "%.1f", elapsedSeconds);
+        line(out, "clients connected", "%d of %d", stats.clientsConnected.get(), config.clients());
+        line(out, "client errors", "%d", stats.clientErrors.get());
+
+        out.append("-- throughput\n");
+        line(out, "audio frames sent, 1/s", "%.1f", framesSent / elapsedSeconds);
+        line(out, "final_text from STT, 1/s", "%.1f", segments / elapsedSeconds);
+        line(out, "GigaChat calls, 1/s", "%.1f", stats.gigachatCalls.get() / elapsedSeconds);
+        line(out, "ideas delivered, 1/s", "%.1f", stats.ideasReceived.get() / elapsedSeconds);
+
+        out.append("-- time to idea (last frame of segment -> idea at author)\n");
+        line(out, "samples", "%d", latencies.size());
+        line(out, "p50, ms", "%.1f", LoadStats.percentile(latencies, 0.50) / 1000.0);
+        line(out, "p99, ms", "%.1f", LoadStats.percentile(latencies, 0.99) / 1000.0);
+        line(out, "max, ms", "%.1f", LoadStats.percentile(latencies, 1.0) / 1000.0);
+
+        out.append("-- heap / GC (whole process)\n");
+        line(out, "heap peak / avg / max, MiB", "%d / %d / %d",
+            jvm.heapPeakBytes() >> 20, jvm.heapAverageBytes() >> 20, jvm.heapMaxBytes() >> 20);
+        jvm.gcSinceStart().forEach((name, gc) -> line(out, "GC " + name, "%d collections, %d ms", gc[0], gc[1]));
+
+        out.append("-- losses\n");
+        line(out, "frames lost before STT", "%d", framesSent - stats.framesAtStt.get());
+        line(out, "segments without idea", "%d", segments - stats.ownIdeas.get());
+        line(out, "  of them merged as mentions", "%d", stats.mentionsReceived.get());
+        line(out, "stt.client.dropped", "%.0f", sum(registry, "stt.client.dropped"));
+        line(out, "stt.final_text duplicates", "%.0f", sum(registry, "stt.final_text", "result", "duplicate"));
+        line(out, "prefilter skipped", "%.0f", sum(registry, "idea.prefilter.chunks", "decision", "skipped"));
+        line(out, "gigachat.limiter.rejected", "%.0f", sum(registry, "gigachat.limiter.rejected"));
+        line(out, "idea.dedup duplicates", "%.0f", sum(registry, "idea.dedup.ideas", "result", "duplicate"));
+        System.out.println(out);
+    }
+
+    private static void line(final StringBuilder out, final String name, final String format, final Object... args) {
+        out.append(String.format("%-34s", name)).append(String.format(format, args)).append('\n');
+    }
+
+    private static double sum(final MeterRegistry registry, final String name, final String... tags) {
+        // stt.client.* — FunctionCounter, остальные — обычные счётчики
+        return registry.find(name).tags(tags).meters().stream()
+            .mapToDouble(meter -> meter instanceof Counter counter ? counter.count()
+                : meter instanceof FunctionCounter counter ? counter.count() : 0)
+            .sum();
+    }
+}
@@ -0,0 +1,155 @@
+package com.rybki.spring_boot.loadtest;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Один участник: создаёт событие или присоединяется к нему, затем duration-seconds шлёт PCM
+ * в реальном темпе (фрейм раз в frame-ms) и ловит свои идеи.
+ * <p>
+ * В первые 4 байта фрейма пишется его номер; заглушка STT возвращает номер последнего фрейма
+ * сегмента маркером [seg:N], так что время до идеи — от отправки этого фрейма до прихода идеи.
+ */
+final class VirtualClient {
+
+    private static final Pattern MARKER = Pattern.compile("\\[seg:(\\d+)]");
+
+    private final LoadTestConfig config;
+    private final LoadStats stats;
+    private final WebClient http;
+    private final WebSocketClient ws;
+    private final URI wsUri;
+    private final ObjectMapper objectMapper;
+
+    private final AtomicLongArray sentAtNanos;
+
+    VirtualClient(final LoadTestConfig config, final LoadStats stats, final WebClient http,
+                  final WebSocketClient ws, final URI wsUri, final ObjectMapper objectMapper) {
+        this.config = config;
+        this.stats = stats;
+        this.http = http;
+        this.ws = ws;
+        this.wsUri = wsUri;
+        this.objectMapper = objectMapper;
+        this.sentAtNanos = new AtomicLongArray(config.framesPerClient());
+    }
+
+    /**
+     * Участник события: clientId выдан бэкендом при создании или присоединении
+     */
+    record Membership(String clientId, String eventId) {}
+
+    Mono<Membership> create() {
+        return http.post().uri("/events")
+            .bodyValue(Map.of())
+            .retrieve()
+            .bodyToMono(JsonNode.class)
+            .map(body -> new Membership(body.path("clientId").asText(), body.path("eventId").asText()));
+    }
+
+    Mono<Membership> join(final String eventId) {
+        return http.post().uri("/events/{eventId}/join", eventId)
+            .bodyValue(Map.of())
+            .retrieve()
+            .bodyToMono(JsonNode.class)
+            .map(body -> new Membership(body.path("clientId").asText(), eventId));
+    }
+
+    Mono<Void> run(final Membership membership) {
+        final String clientId = membership.clientId();
+        final String eventId = membership.eventId();
+        return ws.execute(wsUri, session -> {
+            stats.clientsConnected.incrementAndGet();
+            final Sinks.One<Void> started = Sinks.one();
+
+            final Flux<WebSocketMessage> outbound = Flux.concat(
+                Mono.just(session.textMessage(json(Map.of("type", "start", "clientId", clientId, "eventId", eventId)))),
+                // Бэкенд обрабатывает сообщения параллельно: аудио до регистрации сессии потерялось бы
+                started.asMono().thenMany(frames(session)),
+                Mono.fromCallable(() -> session.textMessage(json(Map.of("type", "end"))))
+            );
+
+            final Mono<Void> inbound = session.receive()
+                .map(WebSocketMessage::getPayloadAsText)
+                .doOnNext(text -> onMessage(text, clientId, started))
+                .take(config.duration().plus(config.drain()))
+                .then();
+
+            return Mono.when(session.send(outbound), inbound)
+                // Сокет закрываем, только дождавшись идей по последним сегментам
+                .then(session.close());
+        });
+    }
+
+    private Flux<WebSocketMessage> frames(final WebSocketSession session) {
+        return Flux.interval(Duration.ofMillis(config.frameMillis()))
+            .take(sentAtNanos.length())
+            .onBackpressureDrop()
+            .map(i -> {
+                final int frame = i.intValue();
+                final byte[] pcm = new byte[config.frameBytes()];
+                ByteBuffer.wrap(pcm).putInt(frame);
+                sentAtNanos.set(frame, System.nanoTime());
+                stats.framesSent.incrementAndGet();
+                return session.binaryMessage(factory -> factory.wrap(pcm));
+            });
+    }
+
+    private void onMessage(final String text, final String clientId, final Sinks.One<Void> started) {
+        try {
+            final JsonNode node = objectMapper.readTree(text);
+            switch (node.path("type").asText()) {
+                case "started" -> started.tryEmitEmpty();
+                case "idea_mention" -> stats.mentionsReceived.incrementAndGet();
+                case "idea" -> {
+                    stats.ideasReceived.incrementAndGet();
+                    if (clientId.equals(node.path("authorId").asText())) {
+                        onOwnIdea(node.path("idea").path("description").asText());
+                    }
+                }
+                default -> {
+                    // heartbeat и прочее
+                }
+            }
+        } catch (final Exception e) {
+            stats.clientErrors.incrementAndGet();
+        }
+    }
+
+    private void onOwnIdea(final String description) {
+        final Matcher marker = MARKER.matcher(description);
+        if (!marker.find()) {
+            return;
+        }
+        final int frame = Integer.parseInt(marker.group(1));
+        final long sentAt = frame < sentAtNanos.length() ? sentAtNanos.get(frame) : 0;
+        if (sentAt != 0) {
+            stats.ownIdeas.incrementAndGet();
+            stats.recordTimeToIdea(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentAt));
+        }
+    }
+
+    private String json(final Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.rybki.spring_boot.client;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Адаптивный лимит одновременных запросов к GigaChat (AIMD).
+ * <p>
+ * Быстрый успешный ответ понемногу поднимает лимит (+1/limit), медленный ответ или ошибка
+ * умножают его на backoff-ratio. Запросы сверх лимита ждут в очереди не дольше queue-timeout;
+ * при переполнении очереди первой вытесняется самая старая LOW-работа.
+ * <p>
+ * Bulkhead из resilience4j здесь не подходит: у него фиксированный лимит, а уменьшение через
+ * changeConfig блокирует вызывающий поток, пока не освободятся разрешения.
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Priority {
+        LOW, NORMAL
+    }
+
+    private final Object lock = new Object();
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final Duration queueTimeout;
+    private final long latencyTargetNanos;
+    private final double backoffRatio;
+
+    // guarded by lock
+    private double limit;
+    private int inFlight;
+
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedShed;
+    private final Counter rejectedDeadline;
+    private final Timer latency;
+    private final Timer queueWait;
+
+    public AdaptiveConcurrencyLimiter(
+        final MeterRegistry meterRegistry,
+        @Value("${gigachat.limiter.initial-limit:8}") final int initialLimit,
+        @Value("${gigachat.limiter.min-limit:1}") final int minLimit,
+        @Value("${gigachat.limiter.max-limit:64}") final int maxLimit,
+        @Value("${gigachat.limiter.max-queue:200}") final int maxQueue,
+        @Value("${gigachat.limiter.queue-timeout:20s}") final Duration queueTimeout,
+        @Value("${gigachat.limiter.latency-target:8s}") final Duration latencyTarget,
+        @Value("${gigachat.limiter.backoff-ratio:0.75}") final double backoffRatio
+    ) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.queueTimeout = queueTimeout;
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.backoffRatio = backoffRatio;
+
+        this.rejectedQueueFull = rejectedCounter(meterRegistry, "queue_full");
+        this.rejectedShed = rejectedCounter(meterRegistry, "shed");
+        this.rejectedDeadline = rejectedCounter(meterRegistry, "deadline");
+        this.latency = Timer.builder("gigachat.limiter.latency")
+            .description("GigaChat call latency under the limiter")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.queueWait = Timer.builder("gigachat.limiter.queue.wait")
+            .description("Time spent waiting for a concurrency permit")
+            .register(meterRegistry);
+        Gauge.builder("gigachat.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+            .description("Current adaptive concurrency limit")
+            .register(meterRegistry);
+        Gauge.builder("gigachat.limiter.inflight", this, AdaptiveConcurrencyLimiter::getInFlight)
+            .description("GigaChat calls in flight")
+            .register(meterRegistry);
+        Gauge.builder("gigachat.limiter.queued", this, AdaptiveConcurrencyLimiter::getQueued)
+            .description("GigaChat calls waiting for a permit")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Выполнить вызов под лимитом. Если разрешение не получено — ExtractionRejectedException.
+     */
+    public <T> Mono<T> execute(final Priority priority, final Supplier<Mono<T>> call) {
+        return acquirePermit(priority)
+            .flatMap(permit -> Mono.defer(call)
+                .doOnSuccess(v -> permit.complete(true))
+                .doOnError(e -> permit.complete(false))
+                .doOnCancel(permit::abandon));
+    }
+
+    /**
+     * Потоковый вариант: разрешение держится до конца потока, задержка — до последнего элемента
+     */
+    public <T> Flux<T> executeMany(final Priority priority, final Supplier<Flux<T>> call) {
+        return acquirePermit(priority)
+            .flatMapMany(permit -> Flux.defer(call)
+                .doOnComplete(() -> permit.complete(true))
+                .doOnError(e -> permit.complete(false))
+                .doOnCancel(permit::abandon));
+    }
+
+    // Ждём не дольше queue-timeout и не позже дедлайна извлечения из контекста
+    private Mono<Permit> acquirePermit(final Priority priority) {
+        return Mono.deferContextual(ctx -> acquire(priority)
+            .timeout(ExtractionDeadline.timeout(ctx, queueTimeout)))
+            .onErrorMap(TimeoutException.class, e -> {
+                rejectedDeadline.increment();
+                return new ExtractionRejectedException("Queue deadline exceeded");
+            });
+    }
+
+    private Mono<Permit> acquire(final Priority priority) {
+        return Mono.create(sink -> {
+            final Waiter waiter = new Waiter(priority, sink, System.nanoTime());
+            Waiter shed = null;
+            boolean granted = false;
+            boolean rejected = false;
+
+            synchronized (lock) {
+                if (queue.isEmpty() && inFlight < (int) limit) {
+                    inFlight++;
+                    granted = true;
+                } else if (queue.size() < maxQueue) {
+                    queue.addLast(waiter);
+                } else {
+                    shed = pickVictim(priority);
+                    if (shed == null) {
+                        rejected = true;
+                    } else {
+                        queue.addLast(waiter);
+                    }
+                }
+            }
+
+            if (granted) {
+                queueWait.record(0, TimeUnit.NANOSECONDS);
+                sink.success(new Permit());
+                return;
+            }
+            if (rejected) {
+                rejectedQueueFull.increment();
+                sink.error(new ExtractionRejectedException("Queue is full"));
+                return;
+            }
+            if (shed != null) {
+                rejectedShed.increment();
+                shed.sink.error(new ExtractionRejectedException("Shed by higher-priority work"));
+            }
+            sink.onCancel(() -> cancel(waiter));
+        });
+    }
+
+    // Кого вытеснить при полной очереди: самую старую LOW-задачу, иначе самую старую вообще
+    private Waiter pickVictim(final Priority incoming) {
+        final Iterator<Waiter> it = queue.iterator();
+        while (it.hasNext()) {
+            final Waiter w = it.next();
+            if (w.priority == Priority.LOW) {
+                it.remove();
+                return w;
+            }
+        }
+        if (incoming == Priority.LOW) {
+            return null;
+        }
+        return queue.pollFirst();
+    }
+
+    private void cancel(final Waiter waiter) {
+        final boolean releaseGranted;
+        synchronized (lock) {
+            releaseGranted = !queue.remove(waiter) && waiter.granted;
+        }
+        // Разрешение выдали, но подписчик уже ушёл (таймаут ожидания) — возвращаем
+        if (releaseGranted) {
+            release(null, false);
+        }
+    }
+
+    private void release(final Long latencyNanos, final boolean success) {
+        final List<Waiter> toGrant;
+        synchronized (lock) {
+            inFlight--;
+            if (latencyNanos != null) {
+                if (success && latencyNanos <= latencyTargetNanos) {
+                    // Растём, только если лимит реально упирается в нагрузку
+                    if (inFlight + 1 >= (int) limit / 2) {
+                        limit = Math.min(maxLimit, limit + 1.0 / limit);
+                    }
+                } else {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                }
+            }
+            toGrant = grantWaiters();
+        }
+        final long now = System.nanoTime();
+        for (final Waiter w : toGrant) {
+            queueWait.record(now - w.enqueuedAtNanos, TimeUnit.NANOSECONDS);
+            w.sink.success(new Permit());
+        }
+    }
+
+    // guarded by lock; NORMAL обслуживаем раньше LOW
+    private List<Waiter> grantWaiters() {
+        final List<Waiter> granted = new ArrayList<>();
+        while (inFlight < (int) limit && !queue.isEmpty()) {
+            Waiter next = null;
+            for (final Waiter w : queue) {
+                if (w.priority == Priority.NORMAL) {
+                    next = w;
+                    break;
+                }
+            }
+            if (next == null) {
+                next = queue.peekFirst();
+            }
+            queue.remove(next);
+            next.granted = true;
+            inFlight++;
+            granted.add(next);
+        }
+        return granted;
+    }
+
+    public double getLimit() {
+        synchronized (lock) {
+            return limit;
+        }
+    }
+
+    public int getInFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    public int getQueued() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    private static Counter rejectedCounter(final MeterRegistry meterRegistry, final String reason) {
+        return Counter.builder("gigachat.limiter.rejected")
+            .description("GigaChat calls rejected by the concurrency limiter")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+
+    private static final class Waiter {
+        private final Priority priority;
+        private final MonoSink<Permit> sink;
+        private final long enqueuedAtNanos;
+        // guarded by lock
+        private boolean granted;
+
+        private Waiter(final Priority priority, final MonoSink<Permit> sink, final long enqueuedAtNanos) {
+            this.priority = priority;
+            this.sink = sink;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+
+    /**
+     * Выданное разрешение; освобождается ровно один раз
+     */
+    private final class Permit {
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private void complete(final boolean success) {
+            if (released.compareAndSet(false, true)) {
+                final long elapsed = System.nanoTime() - startNanos;
+                latency.record(elapsed, TimeUnit.NANOSECONDS);
+                release(elapsed, success);
+            }
+        }
+
+        // Отмена сверху (например, ответ уже не нужен) — лимит не трогаем
+        private void abandon() {
+            if (released.compareAndSet(false, true)) {
+                release(null, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.rybki.spring_boot.client;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Дедлайн извлечения идей в Reactor Context: ставится при получении final_text
+ * и ограничивает ожидание в лимитере, таймауты вызовов и хеджирование.
+ */
+public class ExtractionDeadline {
+
+    private static final String CONTEXT_KEY = ExtractionDeadline.class.getName();
+
+    // Дедлайн через budget от текущего момента; уже заданный более ранний дедлайн сохраняется
+    public static Function<Context, Context> within(final Duration budget) {
+        return at(System.nanoTime() + budget.toNanos());
+    }
+
+    public static Function<Context, Context> at(final long deadlineNanos) {
+        return context -> {
+            final Long existing = context.getOrDefault(CONTEXT_KEY, null);
+            if (existing != null && existing - deadlineNanos <= 0) {
+                return context;
+            }
+            return context.put(CONTEXT_KEY, deadlineNanos);
+        };
+    }
+
+    public static Optional<Long> deadlineNanos(final ContextView context) {
+        return context.getOrEmpty(CONTEXT_KEY);
+    }
+
+    // Сколько осталось до дедлайна (может быть отрицательным); empty — дедлайна нет
+    public static Optional<Duration> remaining(final ContextView context) {
+        return deadlineNanos(context).map(deadline -> Duration.ofNanos(deadline - System.nanoTime()));
+    }
+
+    // Таймаут вызова: не дольше cap и не дольше остатка до дедлайна
+    public static Duration timeout(final ContextView context, final Duration cap) {
+        return remaining(context)
+            .filter(left -> left.compareTo(cap) < 0)
+            .orElse(cap);
+    }
+}
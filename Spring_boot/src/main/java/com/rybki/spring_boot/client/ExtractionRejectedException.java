@@ -0,0 +1,12 @@
+package com.rybki.spring_boot.client;
+
+/**
+ * Запрос к LLM не допущен лимитером: очередь переполнена, вытеснен более ценной работой
+ * или не дождался своей очереди до дедлайна
+ */
+public class ExtractionRejectedException extends RuntimeException {
+
+    public ExtractionRejectedException(final String message) {
+        super(message);
+    }
+}
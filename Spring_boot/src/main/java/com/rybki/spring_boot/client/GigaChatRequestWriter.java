@@ -0,0 +1,69 @@
+package com.rybki.spring_boot.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rybki.spring_boot.model.dto.GigaChatRequestDto;
+
+/**
+ * Сериализация запроса к GigaChat с кэшированием неизменного префикса.
+ * <p>
+ * Системный промпт — несколько килобайт, одинаковых в каждом запросе. Начало тела
+ * ({"model":...,"messages":[системное сообщение) сериализуется один раз на пару (модель, промпт),
+ * дальше дописываются только сообщения с новым текстом. Результат совпадает с сериализацией
+ * GigaChatRequestDto целиком.
+ */
+final class GigaChatRequestWriter {
+
+    private static final String SYSTEM_ROLE = "system";
+
+    private final ObjectMapper objectMapper;
+    private final ConcurrentMap<PrefixKey, byte[]> prefixes = new ConcurrentHashMap<>();
+
+    GigaChatRequestWriter(final ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    byte[] write(final GigaChatRequestDto request) {
+        try {
+            final List<GigaChatRequestDto.Message> messages = request.messages();
+            if (messages.isEmpty() || !SYSTEM_ROLE.equals(messages.get(0).role())) {
+                return objectMapper.writeValueAsBytes(request);
+            }
+
+            final byte[] prefix = prefixes.computeIfAbsent(
+                new PrefixKey(request.model(), messages.get(0).content()), this::serializePrefix);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(prefix.length + 1024);
+            out.write(prefix);
+            for (final GigaChatRequestDto.Message message : messages.subList(1, messages.size())) {
+                out.write(',');
+                out.write(objectMapper.writeValueAsBytes(message));
+            }
+            out.write(("],\"stream\":" + request.stream()
+                + ",\"updateInterval\":" + request.updateInterval() + "}").getBytes(StandardCharsets.UTF_8));
+            return out.toByteArray();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Failed to serialize GigaChat request", e);
+        }
+    }
+
+    private byte[] serializePrefix(final PrefixKey key) {
+        try {
+            return ("{\"model\":" + objectMapper.writeValueAsString(key.model())
+                + ",\"messages\":["
+                + objectMapper.writeValueAsString(new GigaChatRequestDto.Message(SYSTEM_ROLE, key.systemPrompt())))
+                .getBytes(StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Failed to serialize GigaChat prompt prefix", e);
+        }
+    }
+
+    // Промптов — единицы (обычный и пакетный), кэш не растёт
+    private record PrefixKey(String model, String systemPrompt) {}
+}
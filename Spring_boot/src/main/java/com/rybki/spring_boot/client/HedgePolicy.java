@@ -0,0 +1,132 @@
+package com.rybki.spring_boot.client;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Когда отправлять страхующий (hedge) запрос к GigaChat.
+ * <p>
+ * Задержка хеджа — заданный перцентиль последних задержек GigaChat (скользящее окно),
+ * в пределах [min-delay, max-delay]. Хедж не отправляется, пока статистики мало
+ * или если до дедлайна он всё равно не успеет.
+ */
+@Component
+public class HedgePolicy {
+
+    public enum Mode {
+        // Второй запрос к GigaChat
+        REQUEST,
+        // Локальный движок: дешевле, но результат не кэшируется
+        LOCAL
+    }
+
+    // Исход для метрик: хедж не понадобился / отправлен, но основной успел первым / хедж выиграл /
+    // основной упал после отправки хеджа, ответ дал хедж
+    public enum Outcome {
+        NOT_HEDGED, PRIMARY_WON, HEDGE_WON, PRIMARY_FAILED
+    }
+
+    private final boolean enabled;
+    private final Mode mode;
+    private final double percentile;
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private final int minSamples;
+
+    // Кольцевой буфер задержек, мс; guarded by this
+    private final long[] window;
+    private int next;
+    private int filled;
+
+    private final Counter notHedged;
+    private final Counter primaryWon;
+    private final Counter hedgeWon;
+    private final Counter primaryFailed;
+
+    public HedgePolicy(
+        final MeterRegistry meterRegistry,
+        @Value("${gigachat.hedge.enabled:true}") final boolean enabled,
+        @Value("${gigachat.hedge.mode:REQUEST}") final Mode mode,
+        @Value("${gigachat.hedge.percentile:0.9}") final double percentile,
+        @Value("${gigachat.hedge.min-delay:1s}") final Duration minDelay,
+        @Value("${gigachat.hedge.max-delay:15s}") final Duration maxDelay,
+        @Value("${gigachat.hedge.window:256}") final int windowSize,
+        @Value("${gigachat.hedge.min-samples:20}") final int minSamples
+    ) {
+        this.enabled = enabled;
+        this.mode = mode;
+        this.percentile = percentile;
+        this.minDelayMillis = minDelay.toMillis();
+        this.maxDelayMillis = maxDelay.toMillis();
+        this.window = new long[windowSize];
+        this.minSamples = minSamples;
+
+        this.notHedged = outcomeCounter(meterRegistry, "not_hedged");
+        this.primaryWon = outcomeCounter(meterRegistry, "primary_won");
+        this.hedgeWon = outcomeCounter(meterRegistry, "hedge_won");
+        this.primaryFailed = outcomeCounter(meterRegistry, "primary_failed");
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Задержка GigaChat; для отменённого проигравшего — время до отмены (оценка снизу),
+     * иначе окно видело бы только быстрые ответы и хеджей становилось бы всё больше
+     */
+    public synchronized void record(final long latencyMillis) {
+        window[next] = latencyMillis;
+        next = (next + 1) % window.length;
+        if (filled < window.length) {
+            filled++;
+        }
+    }
+
+    /**
+     * Через сколько отправлять хедж; empty — не хеджировать
+     */
+    public Optional<Duration> hedgeDelay(final Optional<Duration> remaining) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        final long[] samples;
+        synchronized (this) {
+            if (filled < minSamples) {
+                return Optional.empty();
+            }
+            samples = Arrays.copyOf(window, filled);
+        }
+        Arrays.sort(samples);
+        final int rank = (int) Math.ceil(percentile * samples.length) - 1;
+        final long delay = Math.min(maxDelayMillis, Math.max(minDelayMillis, samples[Math.max(0, rank)]));
+
+        // Хедж, отправленный после дедлайна, уже никому не поможет
+        if (remaining.isPresent() && remaining.get().toMillis() <= delay) {
+            return Optional.empty();
+        }
+        return Optional.of(Duration.ofMillis(delay));
+    }
+
+    public void recordOutcome(final Outcome outcome) {
+        switch (outcome) {
+            case NOT_HEDGED -> notHedged.increment();
+            case PRIMARY_WON -> primaryWon.increment();
+            case HEDGE_WON -> hedgeWon.increment();
+            case PRIMARY_FAILED -> primaryFailed.increment();
+        }
+    }
+
+    private static Counter outcomeCounter(final MeterRegistry meterRegistry, final String outcome) {
+        return Counter.builder("gigachat.hedge")
+            .description("Idea extractions by hedging outcome")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,254 @@
+package com.rybki.spring_boot.client;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rybki.spring_boot.model.domain.Idea;
+import com.rybki.spring_boot.repository.RedisKeys;
+import com.rybki.spring_boot.util.TextUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Кэш результатов извлечения идей по хэшу нормализованного текста.
+ * <p>
+ * Два уровня: локальный LRU с TTL и (опционально) общий Redis для всех инстансов.
+ * Одновременные запросы с одинаковым текстом склеиваются в один вызов LLM (single-flight).
+ * Ошибки не кэшируются.
+ */
+@Slf4j
+@Component
+public class IdeaExtractionCache {
+
+    private static final TypeReference<List<Idea>> IDEAS_TYPE = new TypeReference<>() {
+    };
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final boolean enabled;
+    private final boolean redisEnabled;
+    private final long ttlNanos;
+    private final Duration ttl;
+    private final Map<String, CachedIdeas> local;
+    private final ConcurrentMap<String, Mono<List<Idea>>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter localHits;
+    private final Counter redisHits;
+    private final Counter misses;
+    private final Counter coalesced;
+
+    public IdeaExtractionCache(
+        final RedisTemplate<String, Object> redisTemplate,
+        final MeterRegistry meterRegistry,
+        @Value("${idea.cache.enabled:true}") final boolean enabled,
+        @Value("${idea.cache.redis.enabled:false}") final boolean redisEnabled,
+        @Value("${idea.cache.ttl:1h}") final Duration ttl,
+        @Value("${idea.cache.max-size:10000}") final int maxSize
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.redisEnabled = redisEnabled;
+        this.ttl = ttl;
+        this.ttlNanos = ttl.toNanos();
+        this.local = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedIdeas> eldest) {
+                return size() > maxSize;
+            }
+        };
+
+        this.localHits = requestCounter(meterRegistry, "local_hit");
+        this.redisHits = requestCounter(meterRegistry, "redis_hit");
+        this.misses = requestCounter(meterRegistry, "miss");
+        this.coalesced = requestCounter(meterRegistry, "coalesced");
+        Gauge.builder("idea.cache.size", this, IdeaExtractionCache::localSize)
+            .description("Entries in the local idea-extraction cache")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Результат из кэша или от loader'а; конкурентные промахи по одному ключу делят один вызов
+     */
+    public Mono<List<Idea>> getOrCompute(final String text, final Function<String, Mono<Loaded>> loader) {
+        if (!enabled) {
+            return loader.apply(text).map(Loaded::ideas);
+        }
+
+        final String key = cacheKey(text);
+        final List<Idea> cached = getLocal(key);
+        if (cached != null) {
+            localHits.increment();
+            return Mono.just(cached);
+        }
+
+        final Mono<List<Idea>> running = inFlight.get(key);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+
+        final Mono<List<Idea>> call = getRemote(key)
+            .switchIfEmpty(Mono.defer(() -> {
+                misses.increment();
+                return loader.apply(text)
+                    .doOnNext(loaded -> {
+                        if (loaded.cacheable()) {
+                            put(key, loaded.ideas());
+                        }
+                    })
+                    .map(Loaded::ideas);
+            }))
+            .doFinally(signal -> inFlight.remove(key))
+            .cache();
+        final Mono<List<Idea>> raced = inFlight.putIfAbsent(key, call);
+        if (raced != null) {
+            coalesced.increment();
+            return raced;
+        }
+        return call;
+    }
+
+    /**
+     * Только поиск, без вызова LLM: для батчинга, где промахи собираются в общий запрос
+     */
+    public Mono<List<Idea>> lookup(final String text) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        final String key = cacheKey(text);
+        final List<Idea> cached = getLocal(key);
+        if (cached != null) {
+            localHits.increment();
+            return Mono.just(cached);
+        }
+        return getRemote(key)
+            .switchIfEmpty(Mono.fromRunnable(misses::increment));
+    }
+
+    /**
+     * Сохранение результата, полученного в обход getOrCompute (например, из пакетного запроса)
+     */
+    public void store(final String text, final List<Idea> ideas) {
+        if (enabled) {
+            put(cacheKey(text), ideas);
+        }
+    }
+
+    static String cacheKey(final String text) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] hash = digest.digest(TextUtil.normalize(text).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void put(final String key, final List<Idea> ideas) {
+        final List<Idea> copy = List.copyOf(ideas);
+        synchronized (local) {
+            local.put(key, new CachedIdeas(copy, System.nanoTime() + ttlNanos));
+        }
+        if (redisEnabled) {
+            Mono.fromRunnable(() -> {
+                    try {
+                        redisTemplate.opsForValue()
+                            .set(RedisKeys.ideaExtractionCacheKey(key), objectMapper.writeValueAsString(copy), ttl);
+                    } catch (final Exception e) {
+                        log.warn("Failed to write idea cache entry to Redis", e);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe();
+        }
+    }
+
+    private List<Idea> getLocal(final String key) {
+        synchronized (local) {
+            final CachedIdeas entry = local.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAtNanos() >= 0) {
+                local.remove(key);
+                return null;
+            }
+            return entry.ideas();
+        }
+    }
+
+    private Mono<List<Idea>> getRemote(final String key) {
+        if (!redisEnabled) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> redisTemplate.opsForValue().get(RedisKeys.ideaExtractionCacheKey(key)))
+            .subscribeOn(Schedulers.boundedElastic())
+            .ofType(String.class)
+            .map(json -> {
+                try {
+                    return objectMapper.readValue(json, IDEAS_TYPE);
+                } catch (final Exception e) {
+                    throw new IllegalStateException("Corrupted idea cache entry", e);
+                }
+            })
+            .doOnNext(ideas -> {
+                redisHits.increment();
+                synchronized (local) {
+                    local.put(key, new CachedIdeas(ideas, System.nanoTime() + ttlNanos));
+                }
+            })
+            .onErrorResume(e -> {
+                log.warn("Failed to read idea cache entry from Redis", e);
+                return Mono.empty();
+            });
+    }
+
+    private int localSize() {
+        synchronized (local) {
+            return local.size();
+        }
+    }
+
+    private static Counter requestCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("idea.cache.requests")
+            .description("Idea-extraction cache lookups")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Результат loader'а; cacheable=false — отдать вызывающим, но не сохранять
+     * (например, ответ запасного локального движка)
+     */
+    public record Loaded(List<Idea> ideas, boolean cacheable) {
+
+        public static Loaded of(final List<Idea> ideas) {
+            return new Loaded(ideas, true);
+        }
+
+        public static Loaded uncacheable(final List<Idea> ideas) {
+            return new Loaded(ideas, false);
+        }
+    }
+
+    private record CachedIdeas(List<Idea> ideas, long expiresAtNanos) {}
+}
@@ -0,0 +1,27 @@
+package com.rybki.spring_boot.client;
+
+import java.util.List;
+
+import com.rybki.spring_boot.model.domain.Idea;
+import reactor.core.publisher.Mono;
+
+/**
+ * Движок извлечения идей из фрагмента транскрипта.
+ * Реализации — Spring-бины; событие выбирает движок по имени (см. IdeaExtractorRegistry).
+ */
+public interface IdeaExtractor {
+
+    /**
+     * Имя движка для выбора в настройках события
+     */
+    String name();
+
+    Mono<List<Idea>> extractIdeas(String text);
+
+    /**
+     * С контекстом предыдущих фрагментов участника; движки, которым он не нужен, его игнорируют
+     */
+    default Mono<List<Idea>> extractIdeas(String text, String context) {
+        return extractIdeas(text);
+    }
+}
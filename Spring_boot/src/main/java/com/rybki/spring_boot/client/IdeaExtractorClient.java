@@ -1,64 +1,382 @@
 package com.rybki.spring_boot.client;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rybki.spring_boot.model.domain.Idea;
+import com.rybki.spring_boot.model.domain.TraceContext;
 import com.rybki.spring_boot.model.dto.GigaChatRequestDto;
 import com.rybki.spring_boot.model.dto.GigaChatResponseDto;
+import com.rybki.spring_boot.model.dto.GigaChatStreamChunkDto;
 import com.rybki.spring_boot.model.dto.NnResponseDto;
 import com.rybki.spring_boot.service.GigaChatAuthService;
+import com.rybki.spring_boot.service.TrafficJournal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
-public class IdeaExtractorClient {
+public class IdeaExtractorClient implements IdeaExtractor {
+
+    public static final String NAME = "gigachat";
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_STRING =
+        new ParameterizedTypeReference<>() {
+        };
+    private static final String STREAM_DONE = "[DONE]";
+    private static final Duration CALL_TIMEOUT = Duration.ofSeconds(30);
+    // Как разрешилась идея пакета без номера фрагмента
+    private static final String UNATTRIBUTED_SINGLE = "single_fragment";
+    private static final String UNATTRIBUTED_REFETCHED = "refetched";
+    private static final String UNATTRIBUTED_FAILED = "refetch_failed";
 
     private final WebClient webClient = WebClient.builder().build();
     private final GigaChatAuthService authService;
+    private final IdeaExtractionCache ideaExtractionCache;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final HedgePolicy hedgePolicy;
+    private final LocalIdeaExtractor localIdeaExtractor;
+    private final TrafficJournal trafficJournal;
+    private final MeterRegistry meterRegistry;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GigaChatRequestWriter requestWriter = new GigaChatRequestWriter(objectMapper);
 
     @Value("${gigachat.api.url}")
     private String apiUrl;
 
+    @Value("${gigachat.limiter.low-priority-chars:200}")
+    private int lowPriorityChars;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    /**
+     * Отказ лимитера (ExtractionRejectedException) пробрасывается — вызывающий может уйти на запасной движок;
+     * прочие ошибки дают пустой список
+     */
+    @Override
     public Mono<List<Idea>> extractIdeas(String text) {
-        GigaChatRequestDto request = GigaChatRequestDto.createIdeaExtractionRequest(text);
+        return extractIdeas(text, null);
+    }
 
-        return authService.getAccessToken()
-            .flatMap(accessToken -> {
-                if (accessToken == null || accessToken.isEmpty()) {
-                    log.warn("No access token available");
-                    return Mono.just(Collections.emptyList());
+    /**
+     * Кэш ключуется только текстом: контекст помогает с идеями на стыке фрагментов,
+     * но повтор того же текста не должен снова идти в LLM
+     */
+    @Override
+    public Mono<List<Idea>> extractIdeas(String text, String context) {
+        return ideaExtractionCache.getOrCompute(text, t -> requestIdeas(t, context))
+            .onErrorResume(e -> !(e instanceof ExtractionRejectedException), e -> {
+                log.error("Failed to extract ideas", e);
+                return Mono.just(Collections.emptyList());
+            });
+    }
+
+    /**
+     * Как extractIdeas, но без повторного поиска в кэше: вызывающий уже сделал lookup, и промах учтён там.
+     * Результат сохраняется в кэш.
+     */
+    public Mono<List<Idea>> extractIdeasAfterMiss(String text, String context) {
+        return requestIdeas(text, context)
+            .doOnNext(loaded -> {
+                if (loaded.cacheable()) {
+                    ideaExtractionCache.store(text, loaded.ideas());
                 }
+            })
+            .map(IdeaExtractionCache.Loaded::ideas)
+            .onErrorResume(e -> !(e instanceof ExtractionRejectedException), e -> {
+                log.error("Failed to extract ideas", e);
+                return Mono.just(Collections.emptyList());
+            });
+    }
+
+    /**
+     * Один запрос на несколько фрагментов (batch). Результат — идеи по каждому фрагменту в том же порядке.
+     * Кэш здесь не используется, ошибки пробрасываются вызывающему.
+     */
+    public Mono<List<List<Idea>>> extractIdeasBatch(List<String> texts, List<String> contexts) {
+        if (trafficJournal.isReplaying()) {
+            // Фрагменты ждут параллельно: пакет отвечает за время самого долгого
+            return Flux.range(0, texts.size())
+                .flatMapSequential(i -> trafficJournal.replayIdeas(texts.get(i), contexts.get(i)))
+                .collectList();
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call(GigaChatRequestDto.createBatchIdeaExtractionRequest(texts, contexts),
+                    AdaptiveConcurrencyLimiter.Priority.NORMAL)
+                .flatMap(this::parseNnIdeas)
+                .flatMap(nnIdeas -> demultiplex(nnIdeas, texts, contexts))
+                .doOnNext(ideas -> {
+                    for (int i = 0; i < ideas.size(); i++) {
+                        trafficJournal.recordIdeas(texts.get(i), contexts.get(i), elapsedMillis(start), ideas.get(i));
+                    }
+                });
+        });
+    }
+
+    /**
+     * Потоковый режим: идея отдаётся, как только её объект закрылся в SSE-ответе модели.
+     * Полный результат попадает в кэш только при успешном завершении потока;
+     * при ошибке уже отданные идеи остаются у получателя, а ошибка пробрасывается.
+     */
+    public Flux<Idea> streamIdeas(String text, String context) {
+        return ideaExtractionCache.lookup(text)
+            .map(Flux::fromIterable)
+            .defaultIfEmpty(Flux.defer(() -> streamAndStore(text, context)))
+            .flatMapMany(ideas -> ideas);
+    }
+
+    private Flux<Idea> streamAndStore(String text, String context) {
+        if (trafficJournal.isReplaying()) {
+            return trafficJournal.replayIdeas(text, context).flatMapIterable(ideas -> ideas);
+        }
+        return Flux.defer(() -> {
+            List<Idea> received = new ArrayList<>();
+            long start = System.nanoTime();
+            return requestIdeasStream(text, context)
+                .doOnNext(received::add)
+                .doOnComplete(() -> {
+                    ideaExtractionCache.store(text, received);
+                    trafficJournal.recordIdeas(text, context, elapsedMillis(start), received);
+                });
+        });
+    }
+
+    /**
+     * Запрос к GigaChat без кэша; ошибки пробрасываются, чтобы не попасть в кэш.
+     * При записи трафика результат уходит в журнал, при воспроизведении — берётся из него.
+     */
+    private Mono<IdeaExtractionCache.Loaded> requestIdeas(String text, String context) {
+        if (trafficJournal.isReplaying()) {
+            return trafficJournal.replayIdeas(text, context).map(IdeaExtractionCache.Loaded::of);
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return hedgedRequest(text, context)
+                .doOnNext(loaded -> trafficJournal.recordIdeas(text, context, elapsedMillis(start), loaded.ideas()));
+        });
+    }
+
+    /**
+     * Если ответа нет дольше перцентиля обычной задержки, уходит страхующий запрос (см. HedgePolicy):
+     * берём первый ответ, проигравшего отменяем. Ошибка основного после отправки хеджа не роняет
+     * запрос, пока есть шанс получить ответ хеджа; если не ответил никто — отдаём ошибку основного.
+     */
+    private Mono<IdeaExtractionCache.Loaded> hedgedRequest(String text, String context) {
+        return Mono.deferContextual(ctx -> {
+            GigaChatRequestDto request = GigaChatRequestDto.createIdeaExtractionRequest(text, context);
+            Mono<IdeaExtractionCache.Loaded> primary = timedRequest(request, priorityOf(text)).map(IdeaExtractionCache.Loaded::of);
+            Optional<Duration> hedgeDelay = hedgePolicy.hedgeDelay(ExtractionDeadline.remaining(ctx));
+            if (hedgeDelay.isEmpty()) {
+                return primary.doOnSuccess(v -> hedgePolicy.recordOutcome(HedgePolicy.Outcome.NOT_HEDGED));
+            }
+
+            AtomicBoolean hedgeSent = new AtomicBoolean();
+            Mono<Hedged> hedge = Mono.delay(hedgeDelay.get())
+                .filter(tick -> mayHedge())
+                .doOnNext(tick -> hedgeSent.set(true))
+                .flatMap(tick -> hedgeRequest(text, request))
+                .map(loaded -> new Hedged(loaded, true))
+                // Неудачный хедж не должен ронять основной запрос
+                .onErrorResume(e -> {
+                    log.debug("Hedge request failed", e);
+                    return Mono.empty();
+                });
+
+            AtomicReference<Throwable> primaryError = new AtomicReference<>();
+            Mono<Hedged> primaryLeg = primary.map(loaded -> new Hedged(loaded, false))
+                .onErrorResume(e -> {
+                    if (!hedgeSent.get()) {
+                        return Mono.error(e);
+                    }
+                    log.debug("Primary request failed, waiting for hedge", e);
+                    primaryError.set(e);
+                    return Mono.empty();
+                });
+
+            return Flux.merge(primaryLeg, hedge)
+                .next()
+                .switchIfEmpty(Mono.defer(() -> primaryError.get() != null
+                    ? Mono.<Hedged>error(primaryError.get())
+                    : Mono.empty()))
+                .doOnNext(winner -> hedgePolicy.recordOutcome(outcome(winner, hedgeSent.get(), primaryError.get())))
+                .map(Hedged::loaded);
+        });
+    }
+
+    private static HedgePolicy.Outcome outcome(Hedged winner, boolean hedgeSent, Throwable primaryError) {
+        if (!hedgeSent) {
+            return HedgePolicy.Outcome.NOT_HEDGED;
+        }
+        if (!winner.hedge()) {
+            return HedgePolicy.Outcome.PRIMARY_WON;
+        }
+        return primaryError != null ? HedgePolicy.Outcome.PRIMARY_FAILED : HedgePolicy.Outcome.HEDGE_WON;
+    }
+
+    private Mono<List<Idea>> timedRequest(GigaChatRequestDto request, AdaptiveConcurrencyLimiter.Priority priority) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call(request, priority)
+                .flatMap(this::parseResponse)
+                .doOnSuccess(v -> hedgePolicy.record(elapsedMillis(start)))
+                .doOnCancel(() -> hedgePolicy.record(elapsedMillis(start)));
+        });
+    }
+
+    private Mono<IdeaExtractionCache.Loaded> hedgeRequest(String text, GigaChatRequestDto request) {
+        if (hedgePolicy.mode() == HedgePolicy.Mode.LOCAL) {
+            return localIdeaExtractor.extractIdeas(text).map(IdeaExtractionCache.Loaded::uncacheable);
+        }
+        // Хедж — дополнительная нагрузка: низкий приоритет, при перегрузке лимитер вытеснит его первым
+        return call(request, AdaptiveConcurrencyLimiter.Priority.LOW)
+            .flatMap(this::parseResponse)
+            .map(IdeaExtractionCache.Loaded::of);
+    }
+
+    // Второй запрос к GigaChat не шлём, если перед лимитером уже очередь
+    private boolean mayHedge() {
+        return hedgePolicy.mode() == HedgePolicy.Mode.LOCAL || concurrencyLimiter.getQueued() == 0;
+    }
+
+    // Весь поток — не дольше CALL_TIMEOUT и не позже дедлайна извлечения, как и call()
+    private Flux<Idea> requestIdeasStream(String text, String context) {
+        return Flux.deferContextual(ctx -> {
+            Duration timeout = ExtractionDeadline.timeout(ctx, CALL_TIMEOUT);
+            if (timeout.isNegative() || timeout.isZero()) {
+                return Flux.error(new ExtractionRejectedException("Extraction deadline exceeded"));
+            }
+            boolean deadlineBound = timeout.compareTo(CALL_TIMEOUT) < 0;
+            long deadlineNanos = System.nanoTime() + timeout.toNanos();
 
-                return webClient.post()
-                    .uri(apiUrl)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .accept(MediaType.APPLICATION_JSON)
-                    .header("Authorization", "Bearer " + accessToken)
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(GigaChatResponseDto.class)
-                    .timeout(Duration.ofSeconds(30))
-                    .flatMap(this::parseResponse)
-                    .onErrorResume(e -> {
-                        log.error("Failed to extract ideas", e);
-                        return Mono.just(Collections.emptyList());
+            return authService.getAccessToken()
+                .flatMapMany(accessToken -> {
+                    if (accessToken == null || accessToken.isEmpty()) {
+                        return Flux.<Idea>error(new IllegalStateException("No access token available"));
+                    }
+
+                    return concurrencyLimiter.executeMany(priorityOf(text), () -> {
+                        IncrementalIdeasParser parser = new IncrementalIdeasParser(objectMapper);
+                        byte[] body = requestWriter.write(
+                            GigaChatRequestDto.createStreamingIdeaExtractionRequest(text, context));
+                        return webClient.post()
+                            .uri(apiUrl)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(MediaType.TEXT_EVENT_STREAM)
+                            .header("Authorization", "Bearer " + accessToken)
+                            .headers(headers -> traceHeader(ctx, headers))
+                            .bodyValue(body)
+                            .retrieve()
+                            .bodyToFlux(SSE_STRING)
+                            // Таймаут на весь ответ: после каждого куска ждём только остаток до срока
+                            .timeout(Mono.delay(timeout), chunk -> Mono.delay(untilNanos(deadlineNanos)))
+                            .mapNotNull(ServerSentEvent::data)
+                            .takeWhile(data -> !STREAM_DONE.equals(data))
+                            .concatMapIterable(data -> parser.feed(deltaContent(data)))
+                            .map(this::toIdea)
+                            .concatWith(Mono.fromRunnable(parser::finish));
                     });
-            });
+                })
+                .onErrorMap(TimeoutException.class, e -> deadlineBound
+                    ? new ExtractionRejectedException("Extraction deadline exceeded")
+                    : e);
+        });
+    }
+
+    private static Duration untilNanos(long deadlineNanos) {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    // Запрос к GigaChat — дочерний участок трассы сессии; без трассы заголовка нет
+    private static void traceHeader(ContextView ctx, HttpHeaders headers) {
+        TraceContext.current(ctx)
+            .ifPresent(trace -> headers.set(TraceContext.HEADER, trace.child().traceparent()));
+    }
+
+    private String deltaContent(String data) {
+        try {
+            GigaChatStreamChunkDto chunk = objectMapper.readValue(data, GigaChatStreamChunkDto.class);
+            if (chunk.choices() == null || chunk.choices().isEmpty() || chunk.choices().get(0).delta() == null) {
+                return "";
+            }
+            String content = chunk.choices().get(0).delta().content();
+            return content == null ? "" : content;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to parse GigaChat stream chunk", e);
+        }
+    }
+
+    // Короткие фрагменты редко содержат идеи — при перегрузке их вытесняем первыми
+    private AdaptiveConcurrencyLimiter.Priority priorityOf(String text) {
+        return text.length() < lowPriorityChars
+            ? AdaptiveConcurrencyLimiter.Priority.LOW
+            : AdaptiveConcurrencyLimiter.Priority.NORMAL;
+    }
+
+    // Таймаут вызова — не больше CALL_TIMEOUT и не позже дедлайна извлечения
+    private Mono<GigaChatResponseDto> call(GigaChatRequestDto request, AdaptiveConcurrencyLimiter.Priority priority) {
+        return Mono.deferContextual(ctx -> {
+            Duration timeout = ExtractionDeadline.timeout(ctx, CALL_TIMEOUT);
+            if (timeout.isNegative() || timeout.isZero()) {
+                return Mono.error(new ExtractionRejectedException("Extraction deadline exceeded"));
+            }
+            boolean deadlineBound = timeout.compareTo(CALL_TIMEOUT) < 0;
+            byte[] body = requestWriter.write(request);
+
+            return authService.getAccessToken()
+                .flatMap(accessToken -> {
+                    if (accessToken == null || accessToken.isEmpty()) {
+                        return Mono.error(new IllegalStateException("No access token available"));
+                    }
+
+                    return concurrencyLimiter.execute(priority, () -> webClient.post()
+                        .uri(apiUrl)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("Authorization", "Bearer " + accessToken)
+                        .headers(headers -> traceHeader(ctx, headers))
+                        .bodyValue(body)
+                        .retrieve()
+                        .bodyToMono(GigaChatResponseDto.class)
+                        .timeout(timeout));
+                })
+                .onErrorMap(TimeoutException.class, e -> deadlineBound
+                    ? new ExtractionRejectedException("Extraction deadline exceeded")
+                    : e);
+        });
+    }
+
+    Mono<List<Idea>> parseResponse(GigaChatResponseDto response) {
+        return parseNnIdeas(response)
+            .map(nnIdeas -> nnIdeas.stream().map(this::toIdea).toList());
     }
 
-    private Mono<List<Idea>> parseResponse(GigaChatResponseDto response) {
+    private Mono<List<NnResponseDto.NnIdea>> parseNnIdeas(GigaChatResponseDto response) {
         if (response == null || response.choices() == null || response.choices().isEmpty()) {
             return Mono.just(Collections.emptyList());
         }
@@ -78,23 +396,86 @@ public class IdeaExtractorClient {
                 return Mono.just(Collections.emptyList());
             }
 
-            List<Idea> ideas = nnResponse.ideas().stream()
-                .map(idea -> new Idea(
-                    idea.id(),
-                    idea.title(),
-                    idea.description()
-                ))
-                .toList();
-
-            return Mono.just(ideas);
+            return Mono.just(nnResponse.ideas());
 
         } catch (JsonProcessingException e) {
-            log.error("Failed to process JSON", e);
-            return Mono.just(Collections.emptyList());
+            // Битый ответ модели не кэшируем: повтор того же текста даст ещё одну попытку
+            return Mono.error(new IllegalStateException("Failed to process JSON", e));
         }
     }
 
-    private String extractJsonFromMarkdown(String content) {
+    /**
+     * Раскладываем идеи пакетного ответа по фрагментам (fragment нумеруется с 1). Идея без верного номера
+     * в пакете из одного фрагмента принадлежит ему; иначе фрагменты без своих идей (если таких нет — все)
+     * извлекаются заново по одному, и их результат заменяет пакетный.
+     */
+    private Mono<List<List<Idea>>> demultiplex(List<NnResponseDto.NnIdea> nnIdeas, List<String> texts,
+                                               List<String> contexts) {
+        int fragments = texts.size();
+        List<List<Idea>> result = new ArrayList<>(fragments);
+        for (int i = 0; i < fragments; i++) {
+            result.add(new ArrayList<>());
+        }
+        int unattributed = 0;
+        for (NnResponseDto.NnIdea nnIdea : nnIdeas) {
+            Integer fragment = nnIdea.fragment();
+            if (fragment != null && fragment >= 1 && fragment <= fragments) {
+                result.get(fragment - 1).add(toIdea(nnIdea));
+            } else if (fragments == 1) {
+                result.get(0).add(toIdea(nnIdea));
+                unattributedCounter(UNATTRIBUTED_SINGLE).increment();
+            } else {
+                unattributed++;
+            }
+        }
+        if (unattributed == 0) {
+            return Mono.just(result);
+        }
+
+        List<Integer> refetch = new ArrayList<>();
+        for (int i = 0; i < fragments; i++) {
+            if (result.get(i).isEmpty()) {
+                refetch.add(i);
+            }
+        }
+        if (refetch.isEmpty()) {
+            for (int i = 0; i < fragments; i++) {
+                refetch.add(i);
+            }
+        }
+        log.warn("{} batch ideas without a valid fragment number, re-extracting {} of {} fragments one by one",
+            unattributed, refetch.size(), fragments);
+        unattributedCounter(UNATTRIBUTED_REFETCHED).increment(unattributed);
+
+        return Flux.fromIterable(refetch)
+            .flatMap(i -> timedRequest(GigaChatRequestDto.createIdeaExtractionRequest(texts.get(i), contexts.get(i)),
+                    AdaptiveConcurrencyLimiter.Priority.NORMAL)
+                .doOnNext(ideas -> result.set(i, ideas))
+                .onErrorResume(e -> {
+                    // Пакетные идеи фрагмента (если были) остаются как есть
+                    log.warn("Failed to re-extract batch fragment {}", i + 1, e);
+                    unattributedCounter(UNATTRIBUTED_FAILED).increment();
+                    return Mono.empty();
+                }))
+            .then(Mono.fromSupplier(() -> result));
+    }
+
+    private Counter unattributedCounter(String resolution) {
+        return Counter.builder("gigachat.batch.unattributed")
+            .description("Batched answers with ideas lacking a valid fragment number, by resolution")
+            .tag("resolution", resolution)
+            .register(meterRegistry);
+    }
+
+    private Idea toIdea(NnResponseDto.NnIdea idea) {
+        return new Idea(
+            idea.id(),
+            idea.title(),
+            idea.description()
+        );
+    }
+
+    static String extractJsonFromMarkdown(String content) {
         if (content.contains("```json")) {
             int start = content.indexOf("```json") + 7;
             int end = content.indexOf("```", start);
@@ -111,4 +492,10 @@ public class IdeaExtractorClient {
         }
         return content.trim();
     }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private record Hedged(IdeaExtractionCache.Loaded loaded, boolean hedge) {}
 }
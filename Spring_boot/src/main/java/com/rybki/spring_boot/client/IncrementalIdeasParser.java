@@ -0,0 +1,155 @@
+package com.rybki.spring_boot.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.rybki.spring_boot.model.dto.NnResponseDto;
+
+/**
+ * Потоковый разбор ответа модели вида {"status": ..., "ideas": [ {...}, ... ], "meta": ...}.
+ * <p>
+ * Текст приходит кусками (delta из SSE); как только очередной объект в массиве ideas закрылся,
+ * он возвращается из {@link #feed(String)}, не дожидаясь конца ответа.
+ * Markdown-обёртка (```json ... ```) пропускается: всё до первой '{' и после корневого объекта игнорируется.
+ * Экземпляр — на один ответ, не потокобезопасен.
+ */
+final class IncrementalIdeasParser {
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader ideaReader;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private boolean rootStarted;
+    private boolean done;
+    private int depth;
+    private boolean ideasFieldPending;
+    private boolean inIdeasArray;
+
+    // Текущая идея, токены которой ещё не закрылись
+    private TokenBuffer capture;
+    private int captureDepth;
+
+    IncrementalIdeasParser(final ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        // Лишние поля в идее (модель иногда добавляет свои) не должны ронять весь поток
+        this.ideaReader = objectMapper.readerFor(NnResponseDto.NnIdea.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        try {
+            this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Failed to create non-blocking JSON parser", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Очередной кусок текста; результат — идеи, закрывшиеся в этом куске
+     */
+    List<NnResponseDto.NnIdea> feed(final String chunk) {
+        if (done || chunk == null || chunk.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String input = chunk;
+        if (!rootStarted) {
+            final int start = input.indexOf('{');
+            if (start < 0) {
+                return Collections.emptyList();
+            }
+            rootStarted = true;
+            input = input.substring(start);
+        }
+
+        try {
+            final byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+            feeder.feedInput(bytes, 0, bytes.length);
+            return drain();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Failed to parse streamed ideas JSON", e);
+        }
+    }
+
+    /**
+     * Конец потока: ответ без корневого объекта или оборванный посередине — ошибка
+     */
+    void finish() {
+        if (!done) {
+            throw new IllegalStateException(rootStarted
+                ? "Streamed ideas JSON is truncated"
+                : "Streamed response contains no JSON object");
+        }
+    }
+
+    private List<NnResponseDto.NnIdea> drain() throws IOException {
+        List<NnResponseDto.NnIdea> closed = Collections.emptyList();
+        JsonToken token;
+        while (!done && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (capture != null) {
+                capture.copyCurrentEvent(parser);
+                if (token.isStructStart()) {
+                    captureDepth++;
+                } else if (token.isStructEnd() && --captureDepth == 0) {
+                    if (closed.isEmpty()) {
+                        closed = new ArrayList<>();
+                    }
+                    closed.add(readIdea(capture));
+                    capture = null;
+                }
+                continue;
+            }
+
+            switch (token) {
+                case FIELD_NAME -> ideasFieldPending = depth == 1 && "ideas".equals(parser.currentName());
+                case START_ARRAY -> {
+                    depth++;
+                    if (ideasFieldPending && depth == 2) {
+                        inIdeasArray = true;
+                    }
+                    ideasFieldPending = false;
+                }
+                case START_OBJECT -> {
+                    if (inIdeasArray && depth == 2) {
+                        capture = new TokenBuffer(parser);
+                        capture.copyCurrentEvent(parser);
+                        captureDepth = 1;
+                    } else {
+                        depth++;
+                        ideasFieldPending = false;
+                    }
+                }
+                case END_ARRAY -> {
+                    if (inIdeasArray && depth == 2) {
+                        inIdeasArray = false;
+                    }
+                    depth--;
+                }
+                case END_OBJECT -> {
+                    depth--;
+                    if (depth == 0) {
+                        done = true;
+                    }
+                }
+                default -> ideasFieldPending = false;
+            }
+        }
+        return closed;
+    }
+
+    private NnResponseDto.NnIdea readIdea(final TokenBuffer buffer) throws IOException {
+        try (JsonParser ideaParser = buffer.asParser(objectMapper)) {
+            return ideaReader.readValue(ideaParser);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.rybki.spring_boot.client;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.rybki.spring_boot.model.domain.Idea;
+import com.rybki.spring_boot.util.TextUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Локальный извлекатель идей без внешних вызовов: для нагрузочных тестов, разработки
+ * и как запасной вариант при перегрузке GigaChat.
+ * <p>
+ * Кандидат — фраза после маркера предложения ("давайте", "предлагаю", "можно было бы", ...)
+ * до конца предложения или следующего маркера. Кандидаты ранжируются по сумме TF-IDF их слов;
+ * IDF считается по всем фразам, которые видел этот экземпляр.
+ */
+@Slf4j
+@Component
+public class LocalIdeaExtractor implements IdeaExtractor {
+
+    public static final String NAME = "local";
+
+    private static final Pattern SENTENCE_END = Pattern.compile("[.!?;\\n]+");
+
+    private final Pattern cuePattern;
+    private final int maxIdeas;
+    private final int minContentWords;
+    private final int titleWords;
+    private final int maxVocabulary;
+
+    // Документная частота слов по всем просмотренным фразам
+    private final Map<String, AtomicLong> documentFrequency = new ConcurrentHashMap<>();
+    private final AtomicLong documents = new AtomicLong();
+
+    public LocalIdeaExtractor(
+        @Value("${idea.local.cue-phrases:давайте,давай,предлагаю,можно было бы,было бы здорово,хорошо бы,"
+            + "стоит попробовать,имеет смысл,почему бы не}") final List<String> cuePhrases,
+        @Value("${idea.local.max-ideas:3}") final int maxIdeas,
+        @Value("${idea.local.min-content-words:2}") final int minContentWords,
+        @Value("${idea.local.title-words:8}") final int titleWords,
+        @Value("${idea.local.max-vocabulary:50000}") final int maxVocabulary
+    ) {
+        this.cuePattern = compileCues(cuePhrases);
+        this.maxIdeas = maxIdeas;
+        this.minContentWords = minContentWords;
+        this.titleWords = titleWords;
+        this.maxVocabulary = maxVocabulary;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    /**
+     * Есть ли в тексте маркер предложения ("давайте", "предлагаю", ...)
+     */
+    public boolean hasCue(final String text) {
+        return cuePattern.matcher(text).find();
+    }
+
+    @Override
+    public Mono<List<Idea>> extractIdeas(final String text) {
+        return Mono.fromSupplier(() -> extract(text));
+    }
+
+    List<Idea> extract(final String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        final List<Candidate> candidates = new ArrayList<>();
+        for (final String sentence : SENTENCE_END.split(text)) {
+            collectCandidates(sentence.trim(), candidates);
+        }
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        learn(candidates);
+        final double totalDocuments = documents.get();
+        for (final Candidate candidate : candidates) {
+            candidate.score = score(candidate.terms, totalDocuments);
+        }
+        return candidates.stream()
+            .sorted(Comparator.comparingDouble((Candidate c) -> c.score).reversed())
+            .limit(maxIdeas)
+            .map(this::toIdea)
+            .toList();
+    }
+
+    // Каждое вхождение маркера открывает кандидата до следующего маркера или конца предложения
+    private void collectCandidates(final String sentence, final List<Candidate> candidates) {
+        final Matcher matcher = cuePattern.matcher(sentence);
+        final List<int[]> spans = new ArrayList<>();
+        while (matcher.find()) {
+            if (!spans.isEmpty()) {
+                spans.get(spans.size() - 1)[1] = matcher.start();
+            }
+            spans.add(new int[]{matcher.end(), sentence.length()});
+        }
+
+        for (final int[] span : spans) {
+            final String clause = sentence.substring(span[0], span[1]).replaceAll("^[\\s,:—-]+", "").trim();
+            final List<String> terms = contentWords(clause);
+            if (terms.size() >= minContentWords) {
+                candidates.add(new Candidate(clause, sentence, terms));
+            }
+        }
+    }
+
+    private List<String> contentWords(final String clause) {
+        return TextUtil.words(clause).stream()
+            .filter(TextUtil::isContentWord)
+            .toList();
+    }
+
+    private void learn(final List<Candidate> candidates) {
+        // Словарь ограничен: при переполнении статистика начинается заново
+        if (documentFrequency.size() > maxVocabulary) {
+            documentFrequency.clear();
+            documents.set(0);
+        }
+        for (final Candidate candidate : candidates) {
+            documents.incrementAndGet();
+            for (final String term : Set.copyOf(candidate.terms)) {
+                documentFrequency.computeIfAbsent(term, k -> new AtomicLong()).incrementAndGet();
+            }
+        }
+    }
+
+    private double score(final List<String> terms, final double totalDocuments) {
+        final Map<String, Integer> tf = new HashMap<>();
+        terms.forEach(term -> tf.merge(term, 1, Integer::sum));
+        double score = 0;
+        for (final Map.Entry<String, Integer> e : tf.entrySet()) {
+            final AtomicLong df = documentFrequency.get(e.getKey());
+            final double idf = Math.log((1 + totalDocuments) / (1 + (df == null ? 0 : df.get()))) + 1;
+            score += e.getValue() * idf;
+        }
+        return score;
+    }
+
+    private Idea toIdea(final Candidate candidate) {
+        final String[] words = candidate.clause.split("\\s+");
+        String title = words.length <= titleWords
+            ? candidate.clause
+            : String.join(" ", List.of(words).subList(0, titleWords)) + "…";
+        title = title.substring(0, 1).toUpperCase(Locale.ROOT) + title.substring(1);
+        final String id = "local_" + Integer.toHexString(TextUtil.normalize(candidate.clause).hashCode());
+        return new Idea(id, title, candidate.sentence);
+    }
+
+    private static Pattern compileCues(final List<String> cuePhrases) {
+        final String alternatives = cuePhrases.stream()
+            .map(String::trim)
+            .filter(phrase -> !phrase.isEmpty())
+            // Длинные маркеры раньше коротких: "давайте" не должно съедаться "давай"
+            .sorted(Comparator.comparingInt(String::length).reversed())
+            .map(phrase -> Pattern.quote(phrase).replace(" ", "\\E\\s+\\Q"))
+            .collect(Collectors.joining("|"));
+        return Pattern.compile("(?<![\\p{L}\\p{N}])(?:" + alternatives + ")(?![\\p{L}\\p{N}])",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    private static final class Candidate {
+        private final String clause;
+        private final String sentence;
+        private final List<String> terms;
+        private double score;
+
+        private Candidate(final String clause, final String sentence, final List<String> terms) {
+            this.clause = clause;
+            this.sentence = sentence;
+            this.terms = terms;
+        }
+    }
+}
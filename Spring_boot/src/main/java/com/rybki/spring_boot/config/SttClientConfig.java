@@ -2,7 +2,9 @@ package com.rybki.spring_boot.config;
 
 import java.time.Duration;
 
+import com.rybki.spring_boot.service.PipelineMetrics;
 import com.rybki.spring_boot.service.SttResponseHandler;
+import com.rybki.spring_boot.service.TrafficJournal;
 import com.rybki.spring_boot.websocket.SttWebSocketClient;
 import lombok.extern.slf4j.Slf4j;
 
@@ -17,8 +19,13 @@ public class SttClientConfig {
     @Value("${stt.url}")
     private String sttUrl;
 
+    @Value("${stt.receive-concurrency:64}")
+    private int receiveConcurrency;
+
     @Bean
-    public SttWebSocketClient sttWebSocketClient(final SttResponseHandler responseHandler) {
+    public SttWebSocketClient sttWebSocketClient(final SttResponseHandler responseHandler,
+                                                 final PipelineMetrics pipelineMetrics,
+                                                 final TrafficJournal trafficJournal) {
         final Duration timeout = Duration.ofSeconds(10);
         final Duration reconnectInitial = Duration.ofSeconds(1);
         final Duration reconnectMax = Duration.ofSeconds(30);
@@ -28,7 +35,10 @@ public class SttClientConfig {
             timeout,
             reconnectInitial,
             reconnectMax,
-            responseHandler
+            receiveConcurrency,
+            responseHandler,
+            pipelineMetrics,
+            trafficJournal
         );
 
         // Стартуем автоматически при старте Spring
@@ -1,23 +1,37 @@
 package com.rybki.spring_boot.controller;
 
+import com.rybki.spring_boot.model.domain.BulkJoinEventRequest;
+import com.rybki.spring_boot.model.domain.BulkJoinEventResponse;
 import com.rybki.spring_boot.model.domain.CreateEventRequest;
 import com.rybki.spring_boot.model.domain.CreateEventResponse;
 import com.rybki.spring_boot.model.domain.EndEventRequest;
 import com.rybki.spring_boot.model.domain.EndEventResponse;
 import com.rybki.spring_boot.model.domain.JoinEventRequest;
 import com.rybki.spring_boot.model.domain.JoinEventResponse;
+import com.rybki.spring_boot.service.EventExportService;
+import com.rybki.spring_boot.service.EventObserverFeed;
 import com.rybki.spring_boot.service.EventService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/events")
@@ -26,18 +40,20 @@ import org.springframework.web.bind.annotation.RestController;
 public class EventController {
 
     private final EventService eventService;
+    private final EventExportService eventExportService;
+    private final EventObserverFeed eventObserverFeed;
 
     // Создать событие
     @PostMapping
     @Operation(summary = "Create Event", description = "Creates new event. Return UserID")
     @ApiResponse(responseCode = "200", description = "Event Created")
-    @ApiResponse(responseCode = "400", description = "Bad Request - validation error")
+    @ApiResponse(responseCode = "400", description = "Bad Request - validation error or unknown idea extractor")
     @ApiResponse(responseCode = "500", description = "Internal Server Error")
-    public ResponseEntity<CreateEventResponse> createEvent(
+    @ApiResponse(responseCode = "503", description = "Event store timed out")
+    public Mono<ResponseEntity<CreateEventResponse>> createEvent(
         final @RequestBody @Valid CreateEventRequest eventRequest) {
-        final CreateEventResponse response =
-            eventService.createEvent(eventRequest);
-        return ResponseEntity.ok(response);
+        return eventService.createEvent(eventRequest)
+            .map(ResponseEntity::ok);
     }
 
     // Присоединиться к событию
@@ -46,24 +62,80 @@ public class EventController {
     @ApiResponse(responseCode = "200", description = "Joined event")
     @ApiResponse(responseCode = "400", description = "Bad Request - validation error")
     @ApiResponse(responseCode = "404", description = "Event not found")
+    @ApiResponse(responseCode = "409", description = "Event already ended")
     @ApiResponse(responseCode = "500", description = "Internal Server Error")
-    public ResponseEntity<JoinEventResponse> joinEvent(final @PathVariable String eventId,
+    @ApiResponse(responseCode = "503", description = "Event store timed out")
+    public Mono<ResponseEntity<JoinEventResponse>> joinEvent(final @PathVariable String eventId,
         final @RequestBody @Valid JoinEventRequest joinEventRequest) {
-        final JoinEventResponse response = eventService.joinEvent(eventId, joinEventRequest);
-        return ResponseEntity.ok(response);
+        return eventService.joinEvent(eventId, joinEventRequest)
+            .map(ResponseEntity::ok);
     }
 
+    // Выдать сразу count участников (вебинар): один вызов Redis вместо count присоединений
+    @PostMapping("/{eventId}/join/bulk")
+    @Operation(summary = "Bulk Join Event", description = "Join event with count new participants. Return UserIDs")
+    @ApiResponse(responseCode = "200", description = "Joined event")
+    @ApiResponse(responseCode = "400", description = "Bad Request - validation error (count 1..1000)")
+    @ApiResponse(responseCode = "404", description = "Event not found")
+    @ApiResponse(responseCode = "409", description = "Event already ended")
+    @ApiResponse(responseCode = "500", description = "Internal Server Error")
+    @ApiResponse(responseCode = "503", description = "Event store timed out")
+    public Mono<ResponseEntity<BulkJoinEventResponse>> bulkJoinEvent(final @PathVariable String eventId,
+        final @RequestBody @Valid BulkJoinEventRequest bulkJoinEventRequest) {
+        return eventService.bulkJoinEvent(eventId, bulkJoinEventRequest)
+            .map(ResponseEntity::ok);
+    }
 
     @PostMapping("/{eventId}/end")
     @Operation(summary = "End Event", description = "End Event")
     @ApiResponse(responseCode = "200", description = "Event ended")
     @ApiResponse(responseCode = "400", description = "Bad Request - validation error")
+    @ApiResponse(responseCode = "403", description = "Only the event creator can end the event")
     @ApiResponse(responseCode = "404", description = "Event not found")
     @ApiResponse(responseCode = "500", description = "Internal Server Error")
-    public ResponseEntity<EndEventResponse> endEvent(final @PathVariable String eventId,
+    @ApiResponse(responseCode = "503", description = "Event store timed out")
+    public Mono<ResponseEntity<EndEventResponse>> endEvent(final @PathVariable String eventId,
         final @RequestBody @Valid EndEventRequest endEventRequest) {
-        final EndEventResponse response =
-            eventService.endEvent(eventId, endEventRequest);
-        return ResponseEntity.ok(response);
+        return eventService.endEvent(eventId, endEventRequest)
+            .map(ResponseEntity::ok);
+    }
+
+    // Лента для наблюдателей (экраны, дашборды): без WebSocket-сессии и без потока STT
+    @GetMapping(value = "/{eventId}/observe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Observe Event",
+        description = "Read-only SSE feed of ideas, mentions and votes; replays the latest update on connect")
+    @ApiResponse(responseCode = "200", description = "SSE stream")
+    @ApiResponse(responseCode = "404", description = "Event not found")
+    @ApiResponse(responseCode = "409", description = "Event already ended")
+    @ApiResponse(responseCode = "500", description = "Internal Server Error")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> observeEvent(final @PathVariable String eventId,
+        final ServerHttpResponse response) {
+        final DataBufferFactory bufferFactory = response.bufferFactory();
+        // Кадры уже сериализованы и общие для всех наблюдателей: wrap без копирования
+        return eventObserverFeed.observe(eventId)
+            .map(frames -> ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .cacheControl(CacheControl.noStore())
+                .body(frames.map(bufferFactory::wrap)));
+    }
+
+    // Выгрузка для отчёта: gzip NDJSON, отдаётся потоком по мере чтения из Redis
+    @GetMapping(value = "/{eventId}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export Event",
+        description = "Streams event, participants, transcript, ideas and mentions as gzip-compressed NDJSON")
+    @ApiResponse(responseCode = "200", description = "Export stream")
+    @ApiResponse(responseCode = "404", description = "Event not found")
+    @ApiResponse(responseCode = "500", description = "Internal Server Error")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> exportEvent(final @PathVariable String eventId,
+        final ServerHttpResponse response) {
+        return eventExportService.export(eventId, response.bufferFactory())
+            .map(body -> ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename("event-" + eventId + ".ndjson")
+                    .build()
+                    .toString())
+                .body(body));
     }
 }
@@ -0,0 +1,16 @@
+package com.rybki.spring_boot.model.domain;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+@Data
+@RequiredArgsConstructor
+public class BulkJoinEventRequest {
+
+    // Сколько участников выдать одним запросом (вебинар, заранее розданные ссылки)
+    @Min(1)
+    @Max(1000)
+    private int count;
+}
@@ -0,0 +1,14 @@
+package com.rybki.spring_boot.model.domain;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BulkJoinEventResponse {
+
+    private String eventId;
+    private List<String> clientIds;
+}
@@ -2,4 +2,8 @@ package com.rybki.spring_boot.model.domain;
 
 import org.springframework.web.reactive.socket.WebSocketSession;
 
-public record ClientSession(String clientId, String eventId, WebSocketSession session) {}
+/**
+ * trace — трасса сессии (null, если сессия не попала в выборку)
+ */
+public record ClientSession(String clientId, String eventId, WebSocketSession session, SessionActivity activity,
+                            TraceContext trace) {}
@@ -7,5 +7,6 @@ import lombok.RequiredArgsConstructor;
 @Data
 public class CreateEventRequest {
 
+    // Движок извлечения идей ("gigachat", "local"); null — движок по умолчанию
+    private String ideaExtractor;
 }
-
@@ -0,0 +1,122 @@
+package com.rybki.spring_boot.model.domain;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.rybki.spring_boot.util.MinHash;
+
+/**
+ * LSH-индекс идей одного события по MinHash-сигнатурам.
+ * <p>
+ * Сигнатура режется на bands полос; идеи, совпавшие хотя бы в одной полосе, — кандидаты,
+ * и дубликатом считается кандидат с оценкой сходства не ниже порога. Хранится не больше
+ * maxIdeas идей: при переполнении вытесняются самые старые.
+ */
+public class IdeaSimilarityIndex {
+
+    private final int bands;
+    private final int rows;
+    private final double threshold;
+    private final int maxIdeas;
+
+    private final Map<Long, List<Entry>> buckets = new HashMap<>();
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private volatile long lastTouchedNanos = System.nanoTime();
+
+    public IdeaSimilarityIndex(final int bands, final int rows, final double threshold, final int maxIdeas) {
+        this.bands = bands;
+        this.rows = rows;
+        this.threshold = threshold;
+        this.maxIdeas = maxIdeas;
+    }
+
+    /**
+     * Похожая идея уже есть — увеличиваем у неё счётчик упоминаний и возвращаем её с новым значением
+     * счётчика (прочитанным под блокировкой индекса); иначе добавляем новую и возвращаем empty
+     */
+    public synchronized Optional<Duplicate> findOrAdd(final Idea idea, final long[] signature) {
+        lastTouchedNanos = System.nanoTime();
+
+        Entry best = null;
+        double bestSimilarity = threshold;
+        for (int band = 0; band < bands; band++) {
+            final List<Entry> bucket = buckets.get(bandKey(signature, band));
+            if (bucket == null) {
+                continue;
+            }
+            for (final Entry candidate : bucket) {
+                final double similarity = MinHash.similarity(signature, candidate.signature);
+                if (similarity >= bestSimilarity) {
+                    best = candidate;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+
+        if (best != null) {
+            return Optional.of(new Duplicate(best.idea, ++best.mentions));
+        }
+
+        final Entry entry = new Entry(idea, signature);
+        entries.addLast(entry);
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfAbsent(bandKey(signature, band), k -> new ArrayList<>(1)).add(entry);
+        }
+        while (entries.size() > maxIdeas) {
+            evict(entries.pollFirst());
+        }
+        return Optional.empty();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long nanosSinceTouched(final long now) {
+        return now - lastTouchedNanos;
+    }
+
+    private void evict(final Entry entry) {
+        for (int band = 0; band < bands; band++) {
+            final long key = bandKey(entry.signature, band);
+            final List<Entry> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    // Хэш одной полосы сигнатуры; номер полосы подмешан, чтобы полосы не пересекались
+    private long bandKey(final long[] signature, final int band) {
+        long h = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            h = MinHash.mix(h * 31 + signature[i]);
+        }
+        return h;
+    }
+
+    /**
+     * Найденный дубликат: ранее опубликованная идея и её счётчик упоминаний с учётом этого повтора
+     */
+    public record Duplicate(Idea idea, int mentions) {}
+
+    private static final class Entry {
+        private final Idea idea;
+        private final long[] signature;
+        // guarded by index
+        private int mentions = 1;
+
+        private Entry(final Idea idea, final long[] signature) {
+            this.idea = idea;
+            this.signature = signature;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.rybki.spring_boot.model.domain;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Отметки времени одного final_text на пути от аудио до отправленной идеи.
+ * Едет в Reactor Context от SttResponseHandler до рассылки уведомлений.
+ * <p>
+ * Момент приёма аудио — по часам бэкенда (STT возвращает то, что мы ему прислали),
+ * поэтому разница с приёмом final_text не зависит от расхождения часов.
+ */
+public class PipelineTimeline {
+
+    private static final String CONTEXT_KEY = PipelineTimeline.class.getName();
+
+    // null — STT не вернул отметку (старый протокол)
+    private final Long audioReceivedAtMillis;
+    private final long finalTextReceivedAtMillis;
+    private final long finalTextReceivedNanos;
+
+    private volatile long extractionStartNanos;
+    private volatile long extractionEndNanos;
+
+    public PipelineTimeline(final Long audioReceivedAtMillis) {
+        this.audioReceivedAtMillis = audioReceivedAtMillis;
+        this.finalTextReceivedAtMillis = System.currentTimeMillis();
+        this.finalTextReceivedNanos = System.nanoTime();
+    }
+
+    public static Function<Context, Context> with(final PipelineTimeline timeline) {
+        return context -> context.put(CONTEXT_KEY, timeline);
+    }
+
+    public static Optional<PipelineTimeline> current(final ContextView context) {
+        return context.getOrEmpty(CONTEXT_KEY);
+    }
+
+    public Optional<Long> audioReceivedAtMillis() {
+        return Optional.ofNullable(audioReceivedAtMillis);
+    }
+
+    public long finalTextReceivedAtMillis() {
+        return finalTextReceivedAtMillis;
+    }
+
+    public long finalTextReceivedNanos() {
+        return finalTextReceivedNanos;
+    }
+
+    public long extractionStartNanos() {
+        return extractionStartNanos;
+    }
+
+    public long extractionEndNanos() {
+        return extractionEndNanos;
+    }
+
+    public void markExtractionStart(final long nanos) {
+        extractionStartNanos = nanos;
+    }
+
+    // Первая отметка выигрывает: в потоковом режиме извлечение закончено для пользователя с первой идеей
+    public void markExtractionEnd(final long nanos) {
+        if (extractionEndNanos == 0) {
+            extractionEndNanos = nanos;
+        }
+    }
+}
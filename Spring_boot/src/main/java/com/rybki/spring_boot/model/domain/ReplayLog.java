@@ -0,0 +1,54 @@
+package com.rybki.spring_boot.model.domain;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * Ограниченный журнал исходящих сообщений клиента для повторной доставки после resume.
+ * Каждое сообщение получает монотонный seq; при переполнении вытесняются самые старые.
+ */
+public class ReplayLog {
+
+    private final int maxMessages;
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private long lastSeq;
+
+    public ReplayLog(final int maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * Назначает следующий seq, сериализует сообщение и сохраняет его в журнал
+     */
+    public synchronized Entry append(final LongFunction<String> serializer) {
+        final long seq = ++lastSeq;
+        final Entry entry = new Entry(seq, serializer.apply(seq));
+        entries.addLast(entry);
+        while (entries.size() > maxMessages) {
+            entries.pollFirst();
+        }
+        return entry;
+    }
+
+    /**
+     * Сообщения с seq больше указанного, в порядке отправки
+     */
+    public synchronized List<Entry> after(final long seq) {
+        final List<Entry> result = new ArrayList<>();
+        for (final Entry entry : entries) {
+            if (entry.seq() > seq) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    public synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    public record Entry(long seq, String payload) {}
+}
@@ -0,0 +1,74 @@
+package com.rybki.spring_boot.model.domain;
+
+import lombok.Getter;
+
+/**
+ * Состояние клиента, которое переживает обрыв WebSocket в пределах grace-окна:
+ * resume-токен, журнал исходящих сообщений и текущая привязка к WS-сессии.
+ */
+@Getter
+public class ResumableClient {
+
+    private final String clientId;
+    private final String eventId;
+    private final String resumeToken;
+    private final ReplayLog replayLog;
+
+    // null, пока клиент отключён
+    private volatile String sessionId;
+    private volatile long detachedAtNanos;
+    private volatile boolean expired;
+
+    public ResumableClient(final String clientId, final String eventId, final String resumeToken,
+        final int replayCapacity) {
+        this.clientId = clientId;
+        this.eventId = eventId;
+        this.resumeToken = resumeToken;
+        this.replayLog = new ReplayLog(replayCapacity);
+    }
+
+    /**
+     * Привязывает клиента к новой сессии; false, если grace-окно уже истекло
+     */
+    public synchronized boolean attach(final String newSessionId) {
+        if (expired) {
+            return false;
+        }
+        this.sessionId = newSessionId;
+        this.detachedAtNanos = 0;
+        return true;
+    }
+
+    /**
+     * Отвязывает клиента, только если он всё ещё привязан к этой сессии
+     * (после resume старая сессия не должна отвязать новую)
+     */
+    public synchronized boolean detach(final String oldSessionId, final long nowNanos) {
+        if (!oldSessionId.equals(sessionId)) {
+            return false;
+        }
+        this.sessionId = null;
+        this.detachedAtNanos = nowNanos;
+        return true;
+    }
+
+    /**
+     * Помечает клиента истёкшим, если он отключён дольше grace-окна
+     */
+    public synchronized boolean expireIfIdle(final long nowNanos, final long graceNanos) {
+        if (sessionId == null && !expired && nowNanos - detachedAtNanos >= graceNanos) {
+            expired = true;
+        }
+        return expired;
+    }
+
+    // Явное завершение ("end"): resume больше невозможен
+    public synchronized void release() {
+        this.expired = true;
+        this.sessionId = null;
+    }
+
+    public boolean isDetached() {
+        return sessionId == null;
+    }
+}
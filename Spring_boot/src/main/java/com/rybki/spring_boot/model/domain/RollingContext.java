@@ -0,0 +1,81 @@
+package com.rybki.spring_boot.model.domain;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Скользящий контекст одного участника: краткая свёртка (названия уже найденных идей)
+ * и хвост последних tailChars символов транскрипта. Размер не зависит от длины события.
+ */
+public class RollingContext {
+
+    private static final String TITLE_SEPARATOR = "; ";
+
+    private final int tailChars;
+    private final int summaryChars;
+
+    private final Deque<String> titles = new ArrayDeque<>();
+    private int titlesLength;
+    private String tail = "";
+    private volatile long lastTouchedNanos = System.nanoTime();
+
+    public RollingContext(final int tailChars, final int summaryChars) {
+        this.tailChars = tailChars;
+        this.summaryChars = summaryChars;
+    }
+
+    /**
+     * Контекст для нового текста (null, если пока пусто); сам текст дописывается в хвост
+     */
+    public synchronized String advance(final String text) {
+        lastTouchedNanos = System.nanoTime();
+        final String rendered = render();
+        tail = cutTail(tail.isEmpty() ? text : tail + " " + text);
+        return rendered;
+    }
+
+    /**
+     * Запомнить найденные идеи; при переполнении свёртки вытесняются самые старые
+     */
+    public synchronized void remember(final List<Idea> ideas) {
+        for (final Idea idea : ideas) {
+            if (idea.title() == null || idea.title().isBlank()) {
+                continue;
+            }
+            titles.addLast(idea.title());
+            titlesLength += idea.title().length() + TITLE_SEPARATOR.length();
+        }
+        while (titlesLength > summaryChars && !titles.isEmpty()) {
+            titlesLength -= titles.pollFirst().length() + TITLE_SEPARATOR.length();
+        }
+    }
+
+    public long nanosSinceTouched(final long now) {
+        return now - lastTouchedNanos;
+    }
+
+    private String render() {
+        if (titles.isEmpty() && tail.isEmpty()) {
+            return null;
+        }
+        final StringBuilder sb = new StringBuilder();
+        if (!titles.isEmpty()) {
+            sb.append("Уже найденные идеи: ").append(String.join(TITLE_SEPARATOR, titles)).append('\n');
+        }
+        if (!tail.isEmpty()) {
+            sb.append("Конец предыдущего фрагмента: …").append(tail);
+        }
+        return sb.toString().trim();
+    }
+
+    // Последние tailChars символов, начиная с границы слова
+    private String cutTail(final String text) {
+        if (text.length() <= tailChars) {
+            return text;
+        }
+        final String cut = text.substring(text.length() - tailChars);
+        final int space = cut.indexOf(' ');
+        return space >= 0 && space < cut.length() - 1 ? cut.substring(space + 1) : cut;
+    }
+}
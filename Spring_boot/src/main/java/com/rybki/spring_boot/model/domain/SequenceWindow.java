@@ -0,0 +1,65 @@
+package com.rybki.spring_boot.model.domain;
+
+/**
+ * Окно уже принятых номеров одного потока STT: наибольший номер и битовая маска
+ * 64 номеров перед ним. Номер старше окна считается повтором — STT переотправляет
+ * неподтверждённое по порядку, так что так далеко назад ничего нового не приходит.
+ */
+public class SequenceWindow {
+
+    public static final int SIZE = Long.SIZE;
+
+    public enum Result {
+        NEW, DUPLICATE
+    }
+
+    // 0 — ещё ничего не принято; номера начинаются с 1
+    private long highest;
+    // Бит i — принят номер highest - i
+    private long seen;
+    private long gaps;
+    private volatile long lastTouchedNanos = System.nanoTime();
+
+    /**
+     * Отметить номер; NEW — номер встретился впервые
+     */
+    public synchronized Result accept(final long seq) {
+        lastTouchedNanos = System.nanoTime();
+        if (seq > highest) {
+            final long shift = seq - highest;
+            // Пропущенные номера между прежним максимумом и новым — возможная потеря
+            if (highest > 0) {
+                gaps += shift - 1;
+            }
+            seen = shift >= SIZE ? 1L : (seen << shift) | 1L;
+            highest = seq;
+            return Result.NEW;
+        }
+
+        final long offset = highest - seq;
+        if (offset >= SIZE) {
+            return Result.DUPLICATE;
+        }
+        final long bit = 1L << offset;
+        if ((seen & bit) != 0) {
+            return Result.DUPLICATE;
+        }
+        // Опоздавший номер закрывает ранее засчитанный пропуск
+        seen |= bit;
+        gaps--;
+        return Result.NEW;
+    }
+
+    public synchronized long getHighest() {
+        return highest;
+    }
+
+    // Номера, которые так и не пришли (с учётом опоздавших)
+    public synchronized long getGaps() {
+        return gaps;
+    }
+
+    public long nanosSinceTouched(final long now) {
+        return now - lastTouchedNanos;
+    }
+}
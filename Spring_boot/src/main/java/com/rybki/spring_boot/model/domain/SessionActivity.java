@@ -0,0 +1,52 @@
+package com.rybki.spring_boot.model.domain;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отметки активности клиентской WS-сессии (для heartbeat и reaper'а)
+ */
+public class SessionActivity {
+
+    private final long startedAtNanos = System.nanoTime();
+    private final AtomicLong lastReadNanos = new AtomicLong(startedAtNanos);
+    private final AtomicLong lastMessageNanos = new AtomicLong(startedAtNanos);
+    private final AtomicLong lastPingNanos = new AtomicLong(startedAtNanos);
+    private final AtomicLong audioBytes = new AtomicLong();
+
+    // Любой входящий фрейм, включая PONG
+    public void markRead() {
+        lastReadNanos.set(System.nanoTime());
+    }
+
+    // Прикладное сообщение (текст или аудио)
+    public void markMessage() {
+        final long now = System.nanoTime();
+        lastReadNanos.set(now);
+        lastMessageNanos.set(now);
+    }
+
+    public void markAudio(final int bytes) {
+        markMessage();
+        audioBytes.addAndGet(bytes);
+    }
+
+    public void markPing() {
+        lastPingNanos.set(System.nanoTime());
+    }
+
+    public long nanosSinceRead(final long nowNanos) {
+        return nowNanos - lastReadNanos.get();
+    }
+
+    public long nanosSinceMessage(final long nowNanos) {
+        return nowNanos - lastMessageNanos.get();
+    }
+
+    public long nanosSincePing(final long nowNanos) {
+        return nowNanos - lastPingNanos.get();
+    }
+
+    public long audioBytes() {
+        return audioBytes.get();
+    }
+}
@@ -0,0 +1,85 @@
+package com.rybki.spring_boot.model.domain;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Идентификаторы трассировки в формате W3C traceparent: 00-{traceId}-{spanId}-{flags}.
+ * <p>
+ * Трасса заводится на старте клиентской сессии и едет дальше как поле traceparent:
+ * в аудио-сообщениях для STT, обратно в final_text и в заголовке запроса к GigaChat.
+ * Несэмплированная сессия трассы не получает вовсе — аудио-путь остаётся как был.
+ */
+public record TraceContext(String traceId, String spanId, boolean sampled) {
+
+    public static final String HEADER = "traceparent";
+
+    private static final String CONTEXT_KEY = TraceContext.class.getName();
+    private static final Pattern TRACEPARENT =
+        Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})");
+    private static final String INVALID_TRACE_ID = "0".repeat(32);
+    private static final String INVALID_SPAN_ID = "0".repeat(16);
+
+    /**
+     * Новая трасса с вероятностью probability, иначе empty
+     */
+    public static Optional<TraceContext> sample(final double probability) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (probability <= 0 || random.nextDouble() >= probability) {
+            return Optional.empty();
+        }
+        return Optional.of(new TraceContext(hex(random, 2), hex(random, 1), true));
+    }
+
+    public static Optional<TraceContext> parse(final String traceparent) {
+        if (traceparent == null) {
+            return Optional.empty();
+        }
+        final Matcher matcher = TRACEPARENT.matcher(traceparent);
+        if (!matcher.matches() || INVALID_TRACE_ID.equals(matcher.group(1))
+            || INVALID_SPAN_ID.equals(matcher.group(2))) {
+            return Optional.empty();
+        }
+        final boolean sampled = (Integer.parseInt(matcher.group(3), 16) & 1) != 0;
+        return Optional.of(new TraceContext(matcher.group(1), matcher.group(2), sampled));
+    }
+
+    public static Function<Context, Context> with(final TraceContext trace) {
+        return context -> trace == null ? context : context.put(CONTEXT_KEY, trace);
+    }
+
+    public static Optional<TraceContext> current(final ContextView context) {
+        return context.getOrEmpty(CONTEXT_KEY);
+    }
+
+    /**
+     * Дочерний участок той же трассы (например, исходящий HTTP-запрос)
+     */
+    public TraceContext child() {
+        return new TraceContext(traceId, hex(ThreadLocalRandom.current(), 1), sampled);
+    }
+
+    public String traceparent() {
+        return "00-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+    }
+
+    // longs случайных 64-битных слов в hex; нулевой идентификатор по спецификации недопустим
+    private static String hex(final ThreadLocalRandom random, final int longs) {
+        final StringBuilder sb = new StringBuilder(longs * 16);
+        for (int i = 0; i < longs; i++) {
+            long value = random.nextLong();
+            if (value == 0) {
+                value = 1;
+            }
+            final String part = Long.toHexString(value);
+            sb.append("0".repeat(16 - part.length())).append(part);
+        }
+        return sb.toString();
+    }
+}
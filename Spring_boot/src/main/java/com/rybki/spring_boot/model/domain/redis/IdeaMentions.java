@@ -0,0 +1,7 @@
+package com.rybki.spring_boot.model.domain.redis;
+
+/**
+ * Сколько раз идею произнесли в событии (с учётом схлопнутых повторов)
+ */
+public record IdeaMentions(String eventId, String ideaId, int mentions) {
+}
@@ -0,0 +1,24 @@
+package com.rybki.spring_boot.model.domain.redis;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Фрагмент расшифровки (final_text от STT). Хранится в ZSET события со счётом receivedAt:
+ * повторная запись того же фрагмента ничего не меняет.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TranscriptSegment {
+
+    private String eventId;
+    private String clientId; // кто говорил
+    private String text;
+    private Instant receivedAt;
+}
@@ -14,8 +14,7 @@ public record GigaChatRequestDto(
     ) {
     }
 
-    public static GigaChatRequestDto createIdeaExtractionRequest(String text) {
-        String systemPrompt = """
+    private static final String SYSTEM_PROMPT = """
             Ты — аналитическая система для извлечения значимых идей из различных источников (переговоры, обсуждения, отчёты, заметки). Твоя основная задача — идентифицировать и выделить существенную информацию, которая направлена на развитие проекта, улучшение продукта или повышение эффективности бизнеса. Ты должна учитывать влияние предложенных идей на внутренние процессы, коммуникацию, стратегию или прибыль организации.
             
             #### Инструкция
@@ -108,14 +107,78 @@ public record GigaChatRequestDto(
             - Включаются только идеи, имеющие практическую ценность для бизнеса.
             """;
 
+    private static final String BATCH_PROMPT_SUFFIX = """
+            
+            #### Пакетный режим
+            Сообщение содержит несколько независимых фрагментов от разных участников. Каждый фрагмент начинается со строки `### Фрагмент N`.
+            - Анализируй каждый фрагмент отдельно и не объединяй идеи из разных фрагментов.
+            - Для каждой идеи добавь поле `"fragment": N` — номер фрагмента, из которого она извлечена.
+            - Верни один общий объект JSON по формату выше.
+            """;
+
+    private static final String BATCH_SYSTEM_PROMPT = SYSTEM_PROMPT + BATCH_PROMPT_SUFFIX;
+
+    private static final String CONTEXT_HEADER =
+        "#### Контекст (сказано ранее; идеи из него не извлекай, используй только для понимания)\n";
+    private static final String NEW_TEXT_HEADER = "#### Новый текст\n";
+
+    public static GigaChatRequestDto createIdeaExtractionRequest(String text) {
+        return createIdeaExtractionRequest(text, null);
+    }
+
+    /**
+     * context — свёртка предыдущих фрагментов того же участника (может быть null)
+     */
+    public static GigaChatRequestDto createIdeaExtractionRequest(String text, String context) {
+        return ideaExtractionRequest(text, context, false);
+    }
+
+    /**
+     * То же, но ответ приходит SSE-потоком кусков текста (stream=true)
+     */
+    public static GigaChatRequestDto createStreamingIdeaExtractionRequest(String text, String context) {
+        return ideaExtractionRequest(text, context, true);
+    }
+
+    /**
+     * Один запрос на несколько фрагментов (нумерация с 1); идеи размечаются полем fragment.
+     * contexts — контекст каждого фрагмента в том же порядке (элементы могут быть null)
+     */
+    public static GigaChatRequestDto createBatchIdeaExtractionRequest(List<String> fragments, List<String> contexts) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < fragments.size(); i++) {
+            content.append("### Фрагмент ").append(i + 1).append('\n')
+                .append(userContent(fragments.get(i), contexts.get(i))).append("\n\n");
+        }
+
         return new GigaChatRequestDto(
             "GigaChat",
             List.of(
-                new Message("system", systemPrompt),
-                new Message("user", text)
+                new Message("system", BATCH_SYSTEM_PROMPT),
+                new Message("user", content.toString().trim())
             ),
             false,
             0
         );
     }
-}
\ No newline at end of file
+
+    private static GigaChatRequestDto ideaExtractionRequest(String text, String context, boolean stream) {
+        return new GigaChatRequestDto(
+            "GigaChat",
+            List.of(
+                new Message("system", SYSTEM_PROMPT),
+                new Message("user", userContent(text, context))
+            ),
+            stream,
+            0
+        );
+    }
+
+    // Контекст идёт отдельным разделом: модель видит начало мысли, но идеи берёт только из нового текста
+    private static String userContent(String text, String context) {
+        if (context == null || context.isBlank()) {
+            return text;
+        }
+        return CONTEXT_HEADER + context + "\n\n" + NEW_TEXT_HEADER + text;
+    }
+}
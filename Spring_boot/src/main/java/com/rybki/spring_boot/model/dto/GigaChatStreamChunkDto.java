@@ -0,0 +1,27 @@
+package com.rybki.spring_boot.model.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Одно SSE-событие потокового ответа GigaChat (stream=true): кусок текста в delta.content
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GigaChatStreamChunkDto(
+    List<Choice> choices
+) {
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Choice(
+        Delta delta,
+        int index
+    ) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Delta(
+        String role,
+        String content
+    ) {
+    }
+}
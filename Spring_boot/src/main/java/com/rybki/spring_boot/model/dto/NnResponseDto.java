@@ -9,7 +9,8 @@ public record NnResponseDto(
     List<NnIdea> ideas,
     Meta meta
 ) {
-    public record NnIdea(String id, String title, String description, String category) {
+    // fragment — номер фрагмента в пакетном запросе (null для одиночного)
+    public record NnIdea(String id, String title, String description, String category, Integer fragment) {
     }
 
     public record Meta(
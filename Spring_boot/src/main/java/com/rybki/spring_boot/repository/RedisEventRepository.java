@@ -3,6 +3,7 @@ package com.rybki.spring_boot.repository;
 import static com.rybki.spring_boot.repository.RedisKeys.eventKey;
 import static com.rybki.spring_boot.repository.RedisKeys.eventParticipantsKey;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -15,14 +16,56 @@ import com.rybki.spring_boot.model.domain.redis.EventStatus;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 
 @Slf4j
 @RequiredArgsConstructor
 @Repository
 public class RedisEventRepository {
 
+    /**
+     * Присоединение одним вызовом: событие есть и не завершено → SADD всех clientId (ARGV).
+     * Ответ: {1, индексы clientId, которые уже были участниками...}, {-1} — события нет, {-2} — завершено.
+     * Event разбирается cjson: с default typing (RedisConfig) он лежит как ["класс", {...поля}],
+     * без типизации — просто {...}; статус-enum сериализуется строкой в обоих случаях.
+     */
+    private static final RedisScript<List> JOIN_SCRIPT = new DefaultRedisScript<>("""
+        local event = redis.call('GET', KEYS[1])
+        if not event then
+            return {-1}
+        end
+        local decoded = cjson.decode(event)
+        local fields = decoded[2] or decoded
+        if fields.status == 'ENDED' then
+            return {-2}
+        end
+        local result = {1}
+        for i, clientId in ipairs(ARGV) do
+            if redis.call('SADD', KEYS[2], clientId) == 0 then
+                table.insert(result, i)
+            end
+        end
+        return result
+        """, List.class);
+
+    public enum JoinStatus {
+        JOINED,
+        NOT_FOUND,
+        ENDED
+    }
+
+    /**
+     * collisions — индексы (с 0) clientId, которые уже были в событии и не добавлены заново
+     */
+    public record JoinResult(JoinStatus status, List<Integer> collisions) {}
+
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
@@ -142,6 +185,32 @@ public class RedisEventRepository {
         }
     }
 
+    // АТОМАРНОЕ ПРИСОЕДИНЕНИЕ: проверка события и добавление участников за один round trip
+    public JoinResult joinEvent(final String eventId, final List<String> clientIds) {
+        try {
+            // clientId сериализуются тем же сериализатором значений, что и в addParticipant
+            final List<?> reply = redisTemplate.execute(JOIN_SCRIPT,
+                List.of(eventKey(eventId), eventParticipantsKey(eventId)), clientIds.toArray());
+            final long code = ((Number) reply.get(0)).longValue();
+            if (code == -1) {
+                return new JoinResult(JoinStatus.NOT_FOUND, List.of());
+            }
+            if (code == -2) {
+                return new JoinResult(JoinStatus.ENDED, List.of());
+            }
+            final List<Integer> collisions = new ArrayList<>(reply.size() - 1);
+            for (int i = 1; i < reply.size(); i++) {
+                // Lua нумерует ARGV с 1
+                collisions.add(((Number) reply.get(i)).intValue() - 1);
+            }
+            log.debug("{} participants joined event {}", clientIds.size() - collisions.size(), eventId);
+            return new JoinResult(JoinStatus.JOINED, collisions);
+        } catch (final Exception e) {
+            log.error("Error joining event: {} ({} clients)", eventId, clientIds.size(), e);
+            throw new RuntimeException("Failed to join event", e);
+        }
+    }
+
     // ПОЛУЧЕНИЕ ВСЕХ УЧАСТНИКОВ
     public Set<String> getParticipants(final String eventId) {
         try {
@@ -210,12 +279,8 @@ public class RedisEventRepository {
                 throw new RuntimeException("Redis is not connected");
             }
             // Удаляем все связанные ключи
-            final ArrayList<String> keys = new ArrayList<>(List.of(
-                RedisKeys.eventKey(eventId),
-                RedisKeys.eventParticipantsKey(eventId),
-                RedisKeys.eventPendingIdeasKey(eventId),
-                RedisKeys.eventAcceptedIdeasKey(eventId)
-            ));
+            final ArrayList<String> keys = new ArrayList<>(eventDataKeys(eventId));
+            keys.add(RedisKeys.eventKey(eventId));
 
             redisTemplate.delete(keys);
             log.debug("Event completely deleted from Redis: {}", eventId);
@@ -225,6 +290,70 @@ public class RedisEventRepository {
         }
     }
 
+    // ЗАВЕРШЕНИЕ С ХРАНЕНИЕМ: статус ENDED, данные события доступны для выгрузки ещё retention
+    public void endEvent(final Event event, final Duration retention) {
+        final String eventId = event.getEventId();
+        try {
+            event.setStatus(EventStatus.ENDED);
+            event.setEndedAt(Instant.now());
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(final RedisOperations<K, V> operations) {
+                    final RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    ops.opsForValue().set(eventKey(eventId), event, retention);
+                    for (final String key : eventDataKeys(eventId)) {
+                        ops.expire(key, retention);
+                    }
+                    return null;
+                }
+            });
+            expireIdeas(eventId, retention);
+            log.debug("Event ended in Redis, kept for {}: {}", retention, eventId);
+        } catch (final Exception e) {
+            log.error("Error ending event in Redis: {}", eventId, e);
+            throw new RuntimeException("Failed to end event in Redis", e);
+        }
+    }
+
+    // Сами идеи idea:{id}: по спискам события курсором SSCAN, EXPIRE пачками одним pipeline
+    private void expireIdeas(final String eventId, final Duration retention) {
+        for (final String setKey : List.of(RedisKeys.eventPendingIdeasKey(eventId),
+            RedisKeys.eventAcceptedIdeasKey(eventId), RedisKeys.eventRejectedIdeasKey(eventId))) {
+            try (Cursor<Object> cursor = redisTemplate.opsForSet().scan(setKey, RedisScans.OPTIONS)) {
+                final List<String> ideaKeys = new ArrayList<>(RedisScans.BATCH);
+                while (cursor.hasNext()) {
+                    ideaKeys.add(RedisKeys.ideaKey(cursor.next().toString()));
+                    if (ideaKeys.size() == RedisScans.BATCH || !cursor.hasNext()) {
+                        RedisScans.expire(redisTemplate, ideaKeys, retention);
+                        ideaKeys.clear();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Участники события курсором SSCAN (ленивый блокирующий поток, см. RedisScans)
+     */
+    public Flux<String> scanParticipants(final String eventId) {
+        final String key = eventParticipantsKey(eventId);
+        return RedisScans.cursor(() -> redisTemplate.opsForSet().scan(key, RedisScans.OPTIONS))
+            .map(Object::toString);
+    }
+
+    // Ключи данных события, кроме самого event:{id}
+    private static List<String> eventDataKeys(final String eventId) {
+        return List.of(
+            RedisKeys.eventParticipantsKey(eventId),
+            RedisKeys.eventPendingIdeasKey(eventId),
+            RedisKeys.eventAcceptedIdeasKey(eventId),
+            RedisKeys.eventRejectedIdeasKey(eventId),
+            RedisKeys.eventIdeaMentionsKey(eventId),
+            RedisKeys.eventTranscriptKey(eventId)
+        );
+    }
+
     // ПОЛУЧЕНИЕ СТАТУСА СОБЫТИЯ
     public Optional<EventStatus> getEventStatus(final String eventId) {
         try {
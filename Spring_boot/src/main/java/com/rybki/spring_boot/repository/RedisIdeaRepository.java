@@ -1,18 +1,35 @@
 package com.rybki.spring_boot.repository;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import com.rybki.spring_boot.model.domain.redis.Idea;
+import com.rybki.spring_boot.model.domain.redis.IdeaMentions;
 import com.rybki.spring_boot.model.domain.redis.IdeaStatus;
+import com.rybki.spring_boot.model.domain.redis.TranscriptSegment;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 
 @Repository
 public class RedisIdeaRepository {
 
+    // Ответы TTL: ключ без срока / ключа нет
+    private static final long NO_TTL = -1;
+    private static final long NO_KEY = -2;
+
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
@@ -25,6 +42,85 @@ public class RedisIdeaRepository {
         redisTemplate.opsForSet().add(pendingKey, idea.getIdeaId());
     }
 
+    /**
+     * Пакетная запись одним pipeline: идеи (как saveIdea), счётчики упоминаний и фрагменты расшифровки.
+     * Операции идемпотентны, повтор пакета после сбоя безопасен.
+     * <p>
+     * Запись может прийти уже после завершения события (отложенный flush) и создать ключи заново,
+     * поэтому после неё ключи получают срок хранения события, см. {@link #applyEventRetention}.
+     */
+    public void saveBatch(final Collection<Idea> ideas, final Collection<IdeaMentions> mentions,
+                          final Collection<TranscriptSegment> transcript) {
+        final Map<String, Set<String>> keysByEvent = new HashMap<>();
+        for (final Idea idea : ideas) {
+            touched(keysByEvent, idea.getEventId(), RedisKeys.ideaKey(idea.getIdeaId()),
+                RedisKeys.eventPendingIdeasKey(idea.getEventId()));
+        }
+        for (final IdeaMentions mention : mentions) {
+            touched(keysByEvent, mention.eventId(), RedisKeys.eventIdeaMentionsKey(mention.eventId()));
+        }
+        for (final TranscriptSegment segment : transcript) {
+            touched(keysByEvent, segment.getEventId(), RedisKeys.eventTranscriptKey(segment.getEventId()));
+        }
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(final RedisOperations<K, V> operations) {
+                final RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (final Idea idea : ideas) {
+                    ops.opsForValue().set(RedisKeys.ideaKey(idea.getIdeaId()), idea);
+                    ops.opsForSet().add(RedisKeys.eventPendingIdeasKey(idea.getEventId()), idea.getIdeaId());
+                }
+                for (final IdeaMentions mention : mentions) {
+                    ops.opsForHash().put(RedisKeys.eventIdeaMentionsKey(mention.eventId()),
+                        mention.ideaId(), mention.mentions());
+                }
+                for (final TranscriptSegment segment : transcript) {
+                    ops.opsForZSet().add(RedisKeys.eventTranscriptKey(segment.getEventId()), segment,
+                        segment.getReceivedAt().toEpochMilli());
+                }
+                return null;
+            }
+        });
+        applyEventRetention(keysByEvent);
+    }
+
+    /**
+     * Срок хранения записанных ключей — как у event:{id}: завершённое событие хранится retention (TTL есть),
+     * удалённого или истёкшего уже нет — его данные удаляем. У идущего события TTL нет, ключи не трогаем.
+     * TTL читается после записи: если событие завершили между ними, его EXPIRE уже застал наши ключи.
+     */
+    private void applyEventRetention(final Map<String, Set<String>> keysByEvent) {
+        final List<String> eventIds = new ArrayList<>(keysByEvent.keySet());
+        final List<Object> ttls = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(final RedisOperations<K, V> operations) {
+                final RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (final String eventId : eventIds) {
+                    ops.getExpire(RedisKeys.eventKey(eventId));
+                }
+                return null;
+            }
+        });
+
+        for (int i = 0; i < eventIds.size(); i++) {
+            final long ttlSeconds = ttls.get(i) instanceof Number ttl ? ttl.longValue() : NO_TTL;
+            final Set<String> keys = keysByEvent.get(eventIds.get(i));
+            if (ttlSeconds > 0) {
+                RedisScans.expire(redisTemplate, keys, Duration.ofSeconds(ttlSeconds));
+            } else if (ttlSeconds == NO_KEY) {
+                redisTemplate.delete(keys);
+            }
+        }
+    }
+
+    private static void touched(final Map<String, Set<String>> keysByEvent, final String eventId,
+                                final String... keys) {
+        Collections.addAll(keysByEvent.computeIfAbsent(eventId, k -> new HashSet<>()), keys);
+    }
+
     public Optional<Idea> findIdeaById(final String ideaId) {
         final String key = RedisKeys.ideaKey(ideaId);
         return Optional.ofNullable((Idea) redisTemplate.opsForValue().get(key));
@@ -80,4 +176,55 @@ public class RedisIdeaRepository {
             .map(Object::toString)
             .collect(Collectors.toSet());
     }
+
+    // ВЫГРУЗКА: ленивые блокирующие потоки (см. RedisScans) — в памяти не больше пачки
+
+    /**
+     * Идеи события: SSCAN по спискам pending/accepted/rejected, сами идеи — MGET пачками
+     */
+    public Flux<Idea> scanIdeas(final String eventId) {
+        return Flux.just(RedisKeys.eventPendingIdeasKey(eventId), RedisKeys.eventAcceptedIdeasKey(eventId),
+                RedisKeys.eventRejectedIdeasKey(eventId))
+            .concatMap(key -> RedisScans.cursor(() -> redisTemplate.opsForSet().scan(key, RedisScans.OPTIONS)))
+            .map(Object::toString)
+            .buffer(RedisScans.BATCH)
+            .concatMapIterable(ideaIds -> {
+                final List<Object> values = redisTemplate.opsForValue()
+                    .multiGet(ideaIds.stream().map(RedisKeys::ideaKey).toList());
+                final List<Idea> ideas = new ArrayList<>(ideaIds.size());
+                if (values != null) {
+                    values.stream().filter(Idea.class::isInstance).map(Idea.class::cast).forEach(ideas::add);
+                }
+                return ideas;
+            });
+    }
+
+    /**
+     * Счётчики упоминаний идей события (HSCAN)
+     */
+    public Flux<IdeaMentions> scanMentions(final String eventId) {
+        final String key = RedisKeys.eventIdeaMentionsKey(eventId);
+        return RedisScans.cursor(() -> redisTemplate.<Object, Object>opsForHash().scan(key, RedisScans.OPTIONS))
+            .map(entry -> new IdeaMentions(eventId, entry.getKey().toString(), ((Number) entry.getValue()).intValue()));
+    }
+
+    /**
+     * Расшифровка по времени: ZRANGE страницами по индексу. Пока событие идёт, страницы могут
+     * сдвинуться на новые фрагменты; после завершения набор не меняется.
+     */
+    public Flux<TranscriptSegment> transcript(final String eventId) {
+        final String key = RedisKeys.eventTranscriptKey(eventId);
+        return Flux.<List<Object>, Long>generate(() -> 0L, (offset, sink) -> {
+                final Set<Object> page = redisTemplate.opsForZSet().range(key, offset, offset + RedisScans.BATCH - 1);
+                if (page == null || page.isEmpty()) {
+                    sink.complete();
+                } else {
+                    sink.next(new ArrayList<>(page));
+                }
+                return offset + RedisScans.BATCH;
+            })
+            .concatMapIterable(page -> page)
+            .filter(TranscriptSegment.class::isInstance)
+            .map(TranscriptSegment.class::cast);
+    }
 }
@@ -26,6 +26,16 @@ public class RedisKeys {
         return "event:" + eventId + ":rejected_ideas";
     }
 
+    // ideaId -> число упоминаний идеи в событии
+    public static String eventIdeaMentionsKey(final String eventId) {
+        return "event:" + eventId + ":idea_mentions";
+    }
+
+    // Расшифровка события: ZSET фрагментов со счётом — временем получения
+    public static String eventTranscriptKey(final String eventId) {
+        return "event:" + eventId + ":transcript";
+    }
+
     public static String ideaKey(final String ideaId) {
         return "idea:" + ideaId;
     }
@@ -37,4 +47,9 @@ public class RedisKeys {
     public static String clientSessionKey(final String clientId) {
         return "client:" + clientId + ":session";
     }
+
+    // Кэш извлечения идей: хэш нормализованного текста
+    public static String ideaExtractionCacheKey(final String textHash) {
+        return "cache:ideas:" + textHash;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package com.rybki.spring_boot.repository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import reactor.core.publisher.Flux;
+
+/**
+ * Курсоры SCAN-семейства как ленивый Flux: следующая пачка читается из Redis по запросу подписчика,
+ * курсор закрывается при завершении или отмене. Вызовы блокирующие — подписываться на boundedElastic.
+ */
+final class RedisScans {
+
+    // Подсказка COUNT для SCAN и размер пачки MGET / ZRANGE
+    static final int BATCH = 500;
+    static final ScanOptions OPTIONS = ScanOptions.scanOptions().count(BATCH).build();
+
+    private RedisScans() {
+    }
+
+    static <T> Flux<T> cursor(final Supplier<Cursor<T>> open) {
+        return Flux.using(open::get, cursor -> Flux.fromIterable(() -> cursor), Cursor::close);
+    }
+
+    /**
+     * EXPIRE на пачку ключей одним pipeline
+     */
+    static void expire(final RedisTemplate<String, Object> redisTemplate, final Collection<String> keys,
+                       final Duration ttl) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(final RedisOperations<K, V> operations) {
+                final RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (final String key : keys) {
+                    ops.expire(key, ttl);
+                }
+                return null;
+            }
+        });
+    }
+}
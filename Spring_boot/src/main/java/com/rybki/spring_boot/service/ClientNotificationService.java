@@ -1,14 +1,19 @@
 package com.rybki.spring_boot.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rybki.spring_boot.model.domain.Idea;
+import com.rybki.spring_boot.model.domain.ReplayLog;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.UncheckedIOException;
 import java.util.Map;
+import java.util.function.LongFunction;
 
 @Service
 @RequiredArgsConstructor
@@ -16,33 +21,86 @@ import java.util.Map;
 public class ClientNotificationService {
 
     private final SessionService sessionService;
+    private final SessionResumeService sessionResumeService;
+    private final PipelineMetrics pipelineMetrics;
+    private final EventObserverFeed eventObserverFeed;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public Mono<Void> sendIdeaToClient(String clientId, String eventId, Idea idea) {
-        return sessionService.getSession(eventId, clientId)
-            .flatMap(session -> sendMessage(session, clientId, eventId, idea))
-            .doOnError(e -> log.error("Failed to send idea to client: {}", clientId, e))
+    /**
+     * Новая идея — наблюдателям и всем участникам события, включая ждущих resume (попадёт в их журнал)
+     */
+    public Mono<Void> broadcastIdea(String eventId, String authorId, Idea idea) {
+        return Mono.fromRunnable(() -> eventObserverFeed.publishIdea(eventId, authorId, idea))
+            .thenMany(Flux.fromIterable(sessionResumeService.clientIdsOf(eventId)))
+            .flatMap(clientId -> send(clientId, eventId, seq -> serialize(seq, clientId, eventId, idea, authorId)))
+            .then(delivered(PipelineMetrics.KIND_IDEA))
+            .doOnSuccess(v -> log.info("Broadcast idea: eventId={}, ideaId={}, authorId={}",
+                eventId, idea.id(), authorId));
+    }
+
+    /**
+     * Повтор уже опубликованной идеи: участники получают новый счётчик упоминаний
+     */
+    public Mono<Void> broadcastMention(String eventId, String ideaId, int mentions) {
+        return Mono.fromRunnable(() -> eventObserverFeed.publishMention(eventId, ideaId, mentions))
+            .thenMany(Flux.fromIterable(sessionResumeService.clientIdsOf(eventId)))
+            .flatMap(clientId -> send(clientId, eventId,
+                seq -> serializeMention(seq, clientId, eventId, ideaId, mentions)))
+            .then(delivered(PipelineMetrics.KIND_MENTION));
+    }
+
+    private Mono<Void> delivered(String kind) {
+        return Mono.deferContextual(ctx -> {
+            pipelineMetrics.delivered(ctx, kind);
+            return Mono.empty();
+        });
+    }
+
+    // Сначала в журнал клиента (с seq), потом в сокет: если клиент сейчас отключён,
+    // сообщение дождётся resume
+    private Mono<Void> send(String clientId, String eventId, LongFunction<String> serializer) {
+        return Mono.defer(() -> Mono.justOrEmpty(sessionResumeService.record(clientId, eventId, serializer)))
+            .flatMap(entry -> sessionService.getSession(eventId, clientId)
+                .flatMap(session -> sendMessage(session, entry)))
+            .doOnError(e -> log.error("Failed to send message to client: {}", clientId, e))
             .onErrorResume(e -> Mono.empty());
     }
 
-    private Mono<Void> sendMessage(WebSocketSession session, String clientId, String eventId, Idea idea) {
+    private Mono<Void> sendMessage(WebSocketSession session, ReplayLog.Entry entry) {
+        return session.send(Mono.just(session.textMessage(entry.payload())))
+            .doOnSuccess(v -> log.debug("Sent message: sessionId={}, seq={}", session.getId(), entry.seq()))
+            .then();
+    }
+
+    private String serialize(long seq, String clientId, String eventId, Idea idea, String authorId) {
         try {
             Map<String, Object> messageMap = Map.of(
                 "type", "idea",
+                "seq", seq,
                 "clientId", clientId,
                 "eventId", eventId,
+                "authorId", authorId,
                 "idea", idea
             );
+            return objectMapper.writeValueAsString(messageMap);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Failed to serialize idea message", e);
+        }
+    }
 
-            String message = objectMapper.writeValueAsString(messageMap);
-
-            return session.send(Mono.just(session.textMessage(message)))
-                .doOnSuccess(v -> log.info("Sent idea to client: clientId={}, ideaId={}", clientId, idea.id()))
-                .then();
-
-        } catch (Exception e) {
-            log.error("Failed to serialize idea message", e);
-            return Mono.empty();
+    private String serializeMention(long seq, String clientId, String eventId, String ideaId, int mentions) {
+        try {
+            Map<String, Object> messageMap = Map.of(
+                "type", "idea_mention",
+                "seq", seq,
+                "clientId", clientId,
+                "eventId", eventId,
+                "ideaId", ideaId,
+                "mentions", mentions
+            );
+            return objectMapper.writeValueAsString(messageMap);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Failed to serialize idea mention message", e);
         }
     }
 }
@@ -0,0 +1,139 @@
+package com.rybki.spring_boot.service;
+
+import java.time.Duration;
+
+import com.rybki.spring_boot.model.domain.ClientSession;
+import com.rybki.spring_boot.model.domain.ResumableClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+/**
+ * Heartbeat и уборка мёртвых клиентских WS-сессий.
+ * <p>
+ * Если от клиента давно не было ни одного фрейма, шлём PING. Сессию закрываем, если:
+ * <ul>
+ *     <li>за read-timeout не пришло ничего, даже PONG (полуоткрытое соединение);</li>
+ *     <li>за idle-timeout не пришло ни одного прикладного сообщения (аудио или текст).</li>
+ * </ul>
+ * Перед закрытием в STT уходит disconnect, чтобы он сбросил буфер и отдал остаток текста.
+ * Оборванный по read-timeout клиент сначала попадает в grace-окно resume
+ * (см. SessionResumeService), и disconnect уходит, только если он не вернулся.
+ */
+@Slf4j
+@Service
+public class ClientSessionReaper {
+
+    private static final CloseStatus READ_TIMEOUT_STATUS = CloseStatus.GOING_AWAY.withReason("Read timeout");
+    private static final CloseStatus IDLE_TIMEOUT_STATUS = CloseStatus.GOING_AWAY.withReason("Idle timeout");
+
+    private final SessionService sessionService;
+    private final SttRoutingService sttRoutingService;
+    private final SessionResumeService sessionResumeService;
+
+    private final long heartbeatIntervalNanos;
+    private final long readTimeoutNanos;
+    private final long idleTimeoutNanos;
+
+    private final Counter heartbeatsSent;
+    private final Counter reapedByReadTimeout;
+    private final Counter reapedByIdleTimeout;
+    private final DistributionSummary reapedAudio;
+
+    public ClientSessionReaper(
+        final SessionService sessionService,
+        final SttRoutingService sttRoutingService,
+        final SessionResumeService sessionResumeService,
+        final MeterRegistry meterRegistry,
+        @Value("${client.ws.heartbeat-interval:15s}") final Duration heartbeatInterval,
+        @Value("${client.ws.read-timeout:45s}") final Duration readTimeout,
+        @Value("${client.ws.idle-timeout:10m}") final Duration idleTimeout
+    ) {
+        this.sessionService = sessionService;
+        this.sttRoutingService = sttRoutingService;
+        this.sessionResumeService = sessionResumeService;
+        this.heartbeatIntervalNanos = heartbeatInterval.toNanos();
+        this.readTimeoutNanos = readTimeout.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+
+        this.heartbeatsSent = Counter.builder("client.ws.heartbeats")
+            .description("PING frames sent to clients")
+            .register(meterRegistry);
+        this.reapedByReadTimeout = reapedCounter(meterRegistry, "read_timeout");
+        this.reapedByIdleTimeout = reapedCounter(meterRegistry, "idle_timeout");
+        this.reapedAudio = DistributionSummary.builder("client.ws.sessions.reaped.audio")
+            .description("Audio forwarded to STT by reaped sessions (upper bound of released STT buffers)")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("client.ws.sessions.active", sessionService, SessionService::getSessionCount)
+            .description("Registered client WebSocket sessions")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${client.ws.sweep-interval-ms:5000}")
+    public void sweep() {
+        final long now = System.nanoTime();
+        for (final ClientSession cs : sessionService.getAllSessions()) {
+            if (cs.activity().nanosSinceRead(now) >= readTimeoutNanos) {
+                reap(cs, READ_TIMEOUT_STATUS, reapedByReadTimeout, true);
+            } else if (cs.activity().nanosSinceMessage(now) >= idleTimeoutNanos) {
+                reap(cs, IDLE_TIMEOUT_STATUS, reapedByIdleTimeout, false);
+            } else if (cs.activity().nanosSinceRead(now) >= heartbeatIntervalNanos
+                && cs.activity().nanosSincePing(now) >= heartbeatIntervalNanos) {
+                ping(cs);
+            }
+        }
+
+        for (final ResumableClient client : sessionResumeService.expireDetached()) {
+            sttRoutingService.notifyEnd(client.getClientId(), client.getEventId()).subscribe();
+        }
+    }
+
+    private void ping(final ClientSession cs) {
+        final WebSocketSession session = cs.session();
+        cs.activity().markPing();
+        session.send(Mono.just(session.pingMessage(factory -> factory.wrap(new byte[0]))))
+            .doOnSuccess(v -> heartbeatsSent.increment())
+            .doOnError(e -> log.debug("Failed to send ping: sessionId={}", session.getId(), e))
+            .onErrorResume(e -> Mono.empty())
+            .subscribe();
+    }
+
+    private void reap(final ClientSession cs, final CloseStatus status, final Counter counter,
+        final boolean resumable) {
+        final WebSocketSession session = cs.session();
+
+        // Сначала убираем из SessionService: doFinally в обработчике не отправит disconnect повторно
+        sessionService.evict(session)
+            .flatMap(evicted -> {
+                counter.increment();
+                reapedAudio.record(evicted.activity().audioBytes());
+                log.info("Reaping client session ({}): sessionId={}, clientId={}, eventId={}",
+                    status.getReason(), session.getId(), evicted.clientId(), evicted.eventId());
+                if (resumable && sessionResumeService.detach(evicted)) {
+                    return Mono.empty();
+                }
+                sessionResumeService.release(evicted);
+                return sttRoutingService.notifyEnd(evicted.clientId(), evicted.eventId());
+            })
+            .then(Mono.defer(() -> session.close(status)))
+            .doOnError(e -> log.warn("Failed to reap client session: sessionId={}", session.getId(), e))
+            .onErrorResume(e -> Mono.empty())
+            .subscribe();
+    }
+
+    private static Counter reapedCounter(final MeterRegistry meterRegistry, final String reason) {
+        return Counter.builder("client.ws.sessions.reaped")
+            .description("Client sessions closed by the reaper")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+}
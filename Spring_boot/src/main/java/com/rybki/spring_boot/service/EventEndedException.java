@@ -0,0 +1,15 @@
+package com.rybki.spring_boot.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Событие есть, но уже завершено: присоединиться нельзя
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class EventEndedException extends RuntimeException {
+
+    public EventEndedException(final String eventId) {
+        super("Cannot join ended event: " + eventId);
+    }
+}
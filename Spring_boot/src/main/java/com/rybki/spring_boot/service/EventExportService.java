@@ -0,0 +1,145 @@
+package com.rybki.spring_boot.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.rybki.spring_boot.model.domain.redis.Event;
+import com.rybki.spring_boot.repository.RedisEventRepository;
+import com.rybki.spring_boot.repository.RedisIdeaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Выгрузка события для отчёта: NDJSON (одна запись на строку, поле type первым), сжатый gzip.
+ * <p>
+ * Порядок: event, participant, transcript, idea, mention. Данные читаются из Redis курсорами
+ * по мере того, как клиент забирает ответ, и сжимаются пачками строк: в памяти — пачка и окно
+ * сжатия, а не всё событие, сколько бы часов оно ни шло. Голоса пока не хранятся (см. VoteService),
+ * поэтому в выгрузку не попадают.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EventExportService {
+
+    // Строк на один сжатый кусок ответа
+    private static final int LINES_PER_CHUNK = 256;
+    private static final int GZIP_BUFFER_BYTES = 8192;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final RedisEventRepository eventRepository;
+    private final RedisIdeaRepository ideaRepository;
+
+    /**
+     * Тело ответа выгрузки; события нет — EventNotFoundException (404) до начала ответа
+     */
+    public Mono<Flux<DataBuffer>> export(final String eventId, final DataBufferFactory bufferFactory) {
+        return Mono.fromCallable(() -> eventRepository.findEventById(eventId)
+                .orElseThrow(() -> new EventNotFoundException(eventId)))
+            .subscribeOn(Schedulers.boundedElastic())
+            .map(event -> gzip(lines(event), bufferFactory)
+                .doOnComplete(() -> log.info("Event exported: eventId={}", eventId))
+                .doOnError(e -> log.error("Event export failed: eventId={}", eventId, e)));
+    }
+
+    private Flux<byte[]> lines(final Event event) {
+        final String eventId = event.getEventId();
+        return Flux.concat(
+                Flux.just(line("event", event)),
+                eventRepository.scanParticipants(eventId)
+                    .map(clientId -> line("participant", Map.of("eventId", eventId, "clientId", clientId))),
+                ideaRepository.transcript(eventId).map(segment -> line("transcript", segment)),
+                ideaRepository.scanIdeas(eventId).map(idea -> line("idea", idea)),
+                ideaRepository.scanMentions(eventId).map(mentions -> line("mention", mentions)))
+            // Курсоры Redis блокирующие
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private byte[] line(final String type, final Object value) {
+        final ObjectNode node = objectMapper.createObjectNode().put("type", type);
+        node.setAll((ObjectNode) objectMapper.valueToTree(value));
+        try {
+            final byte[] json = objectMapper.writeValueAsBytes(node);
+            final byte[] line = new byte[json.length + 1];
+            System.arraycopy(json, 0, line, 0, json.length);
+            line[json.length] = '\n';
+            return line;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize export line: " + type, e);
+        }
+    }
+
+    private static Flux<DataBuffer> gzip(final Flux<byte[]> lines, final DataBufferFactory bufferFactory) {
+        return Flux.using(GzipChunker::new,
+            chunker -> lines.buffer(LINES_PER_CHUNK)
+                .map(chunker::compress)
+                .concatWith(Mono.fromCallable(chunker::finish))
+                .filter(chunk -> chunk.length > 0)
+                .map(bufferFactory::wrap),
+            GzipChunker::close);
+    }
+
+    /**
+     * Один gzip-поток на весь ответ; после каждой пачки строк — SYNC_FLUSH, чтобы сжатое
+     * можно было отдать клиенту сразу, не дожидаясь конца выгрузки.
+     * Отмена подписки закрывает поток с другого потока, поэтому методы synchronized.
+     */
+    private static final class GzipChunker {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(GZIP_BUFFER_BYTES);
+        private final GZIPOutputStream gzip;
+
+        private GzipChunker() throws IOException {
+            this.gzip = new GZIPOutputStream(out, GZIP_BUFFER_BYTES, true);
+        }
+
+        private synchronized byte[] compress(final List<byte[]> lines) {
+            try {
+                for (final byte[] line : lines) {
+                    gzip.write(line);
+                }
+                gzip.flush();
+                return drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private synchronized byte[] finish() throws IOException {
+            gzip.finish();
+            return drain();
+        }
+
+        private synchronized void close() {
+            try {
+                gzip.close();
+            } catch (IOException e) {
+                log.debug("Failed to close export gzip stream", e);
+            }
+        }
+
+        private byte[] drain() {
+            final byte[] chunk = out.toByteArray();
+            out.reset();
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.rybki.spring_boot.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * События нет (не создавалось или уже завершено и удалено)
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class EventNotFoundException extends RuntimeException {
+
+    public EventNotFoundException(final String eventId) {
+        super("Event not found with id: " + eventId);
+    }
+}
@@ -0,0 +1,219 @@
+package com.rybki.spring_boot.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rybki.spring_boot.model.domain.Idea;
+import com.rybki.spring_boot.model.domain.redis.EventStatus;
+import com.rybki.spring_boot.repository.RedisEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Лента события для наблюдателей (экраны, дашборды, модераторы) по SSE: идеи, упоминания, голоса.
+ * <p>
+ * На событие — один горячий multicast-поток: обновление сериализуется в готовый SSE-кадр один раз
+ * и отдаётся всем наблюдателям как есть; подключившийся позже сразу получает последний кадр.
+ * Наблюдатели не попадают в SessionService, не получают журнал resume и не занимают поток STT.
+ * Медленный наблюдатель теряет самые старые кадры сверх observer.buffer, остальных не задерживает.
+ */
+@Slf4j
+@Service
+public class EventObserverFeed {
+
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final RedisEventRepository eventRepository;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentMap<String, Feed> feeds = new ConcurrentHashMap<>();
+    // Завершённые события (eventId → System.nanoTime() завершения): извлечение ещё до idea.deadline
+    // публикует идеи после конца события, и ленту нельзя создать заново. Помним idle-ttl.
+    private final ConcurrentMap<String, Long> completed = new ConcurrentHashMap<>();
+
+    private final int buffer;
+    private final long idleTtlNanos;
+    // Один таймер на всех наблюдателей: комментарий SSE не даёт прокси закрыть молчащее соединение
+    private final Flux<byte[]> heartbeats;
+
+    private final Counter dropped;
+
+    public EventObserverFeed(
+        final RedisEventRepository eventRepository,
+        final MeterRegistry meterRegistry,
+        @Value("${observer.heartbeat-interval:15s}") final Duration heartbeatInterval,
+        @Value("${observer.buffer:256}") final int buffer,
+        @Value("${observer.idle-ttl:30m}") final Duration idleTtl
+    ) {
+        this.eventRepository = eventRepository;
+        this.buffer = buffer;
+        this.idleTtlNanos = idleTtl.toNanos();
+        this.heartbeats = Flux.interval(heartbeatInterval).map(tick -> HEARTBEAT).share();
+
+        this.dropped = Counter.builder("observer.frames.dropped")
+            .description("Feed frames dropped for observers that read too slowly")
+            .register(meterRegistry);
+        Gauge.builder("observer.feeds", feeds, ConcurrentMap::size)
+            .description("Events with an observer feed")
+            .register(meterRegistry);
+        Gauge.builder("observer.subscribers", this, EventObserverFeed::getSubscribers)
+            .description("Connected observers across all events")
+            .register(meterRegistry);
+    }
+
+    /**
+     * SSE-кадры ленты события. Нет события — EventNotFoundException (404), завершено — EventEndedException (409)
+     */
+    public Mono<Flux<byte[]>> observe(final String eventId) {
+        return Mono.fromCallable(() -> eventRepository.findEventById(eventId)
+                .orElseThrow(() -> new EventNotFoundException(eventId)))
+            .subscribeOn(Schedulers.boundedElastic())
+            .map(event -> {
+                if (event.getStatus() == EventStatus.ENDED) {
+                    throw new EventEndedException(eventId);
+                }
+                final Feed feed = feed(eventId);
+                if (feed == null) {
+                    throw new EventEndedException(eventId);
+                }
+                // Пульс — только пока открыта лента: завершение ленты завершает и ответ
+                return feed.sink.asFlux()
+                    .publish(frames -> frames.mergeWith(heartbeats.takeUntilOther(frames.then())))
+                    .onBackpressureBuffer(buffer, frame -> dropped.increment(), BufferOverflowStrategy.DROP_OLDEST)
+                    .doOnSubscribe(s -> log.debug("Observer connected: eventId={}", eventId))
+                    .doFinally(signal -> log.debug("Observer disconnected: eventId={}, signal={}", eventId, signal));
+            });
+    }
+
+    public void publishIdea(final String eventId, final String authorId, final Idea idea) {
+        publish(eventId, "idea", Map.of(
+            "eventId", eventId,
+            "authorId", authorId,
+            "idea", idea
+        ));
+    }
+
+    public void publishMention(final String eventId, final String ideaId, final int mentions) {
+        publish(eventId, "idea_mention", Map.of(
+            "eventId", eventId,
+            "ideaId", ideaId,
+            "mentions", mentions
+        ));
+    }
+
+    public void publishVote(final String eventId, final String clientId, final JsonNode voteData) {
+        publish(eventId, "vote", Map.of(
+            "eventId", eventId,
+            "clientId", clientId,
+            "vote", voteData
+        ));
+    }
+
+    /**
+     * Событие завершено: наблюдатели получают конец потока, лента удаляется
+     */
+    public void complete(final String eventId) {
+        // Сначала отметка, потом удаление: см. feed()
+        completed.put(eventId, System.nanoTime());
+        final Feed feed = feeds.remove(eventId);
+        if (feed != null) {
+            feed.complete();
+            log.info("Observer feed completed: eventId={}", eventId);
+        }
+    }
+
+    // Ленты без наблюдателей и без обновлений за idle-ttl (событие так и не завершили через API)
+    @Scheduled(fixedDelayString = "${observer.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        final long now = System.nanoTime();
+        completed.values().removeIf(completedAt -> now - completedAt >= idleTtlNanos);
+        feeds.entrySet().removeIf(e -> {
+            final Feed feed = e.getValue();
+            if (feed.sink.currentSubscriberCount() > 0 || now - feed.touchedNanos < idleTtlNanos) {
+                return false;
+            }
+            feed.complete();
+            return true;
+        });
+    }
+
+    public int getSubscribers() {
+        return feeds.values().stream().mapToInt(feed -> feed.sink.currentSubscriberCount()).sum();
+    }
+
+    private void publish(final String eventId, final String type, final Map<String, Object> message) {
+        final byte[] data;
+        try {
+            data = objectMapper.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize observer frame: eventId={}, type={}", eventId, type, e);
+            return;
+        }
+        final Feed feed = feed(eventId);
+        if (feed == null) {
+            log.debug("Dropped observer frame for completed event: eventId={}, type={}", eventId, type);
+            return;
+        }
+        feed.emit(type, data);
+    }
+
+    /**
+     * Лента события; null — событие завершено. Проверка отметки после computeIfAbsent не даёт гонки
+     * с complete(): лента, созданная до удаления, удаляется и завершается там, созданная после — здесь.
+     */
+    private Feed feed(final String eventId) {
+        if (completed.containsKey(eventId)) {
+            return null;
+        }
+        final Feed feed = feeds.computeIfAbsent(eventId, k -> new Feed());
+        if (completed.containsKey(eventId)) {
+            if (feeds.remove(eventId, feed)) {
+                feed.complete();
+            }
+            return null;
+        }
+        return feed;
+    }
+
+    /**
+     * Лента одного события. Кадр: id (номер в ленте — по пропускам видно потерю), event (тип), data (JSON)
+     */
+    private static final class Feed {
+
+        private final Sinks.Many<byte[]> sink = Sinks.many().replay().latest();
+        // guarded by this
+        private long seq;
+        private volatile long touchedNanos = System.nanoTime();
+
+        // Sinks.Many не допускает параллельной эмиссии: публикуют несколько потоков конвейера
+        private synchronized void emit(final String type, final byte[] data) {
+            final byte[] head = ("id:" + ++seq + "\nevent:" + type + "\ndata:").getBytes(StandardCharsets.UTF_8);
+            final byte[] frame = new byte[head.length + data.length + 2];
+            System.arraycopy(head, 0, frame, 0, head.length);
+            System.arraycopy(data, 0, frame, head.length, data.length);
+            frame[frame.length - 2] = '\n';
+            frame[frame.length - 1] = '\n';
+            sink.tryEmitNext(frame);
+            touchedNanos = System.nanoTime();
+        }
+
+        private synchronized void complete() {
+            sink.tryEmitComplete();
+        }
+    }
+}
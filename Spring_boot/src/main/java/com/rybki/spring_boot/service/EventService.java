@@ -1,8 +1,18 @@
 package com.rybki.spring_boot.service;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
 
+import com.rybki.spring_boot.model.domain.BulkJoinEventRequest;
+import com.rybki.spring_boot.model.domain.BulkJoinEventResponse;
 import com.rybki.spring_boot.model.domain.CreateEventRequest;
 import com.rybki.spring_boot.model.domain.CreateEventResponse;
 import com.rybki.spring_boot.model.domain.EndEventRequest;
@@ -12,28 +22,89 @@ import com.rybki.spring_boot.model.domain.JoinEventResponse;
 import com.rybki.spring_boot.model.domain.redis.Event;
 import com.rybki.spring_boot.model.domain.redis.EventStatus;
 import com.rybki.spring_boot.repository.RedisEventRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Создание, присоединение и завершение событий. Репозиторий блокирующий, поэтому работа с ним
+ * уходит на boundedElastic: event-loop остаётся WebSocket-трафику. Ошибки типизированы
+ * (404/409/403/400), зависание Redis дольше event.api.timeout — 503.
+ */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class EventService {
 
     private final RedisEventRepository eventRepository;
+    private final IdeaExtractorRegistry ideaExtractorRegistry;
+    private final EventObserverFeed eventObserverFeed;
+    private final Duration timeout;
+    private final Duration retention;
+
+    public EventService(
+        final RedisEventRepository eventRepository,
+        final IdeaExtractorRegistry ideaExtractorRegistry,
+        final EventObserverFeed eventObserverFeed,
+        @Value("${event.api.timeout:5s}") final Duration timeout,
+        @Value("${event.retention:7d}") final Duration retention
+    ) {
+        this.eventRepository = eventRepository;
+        this.ideaExtractorRegistry = ideaExtractorRegistry;
+        this.eventObserverFeed = eventObserverFeed;
+        this.timeout = timeout;
+        this.retention = retention;
+    }
+
+    public Mono<CreateEventResponse> createEvent(final CreateEventRequest eventRequest) {
+        return offload("create", () -> createEventBlocking(eventRequest));
+    }
+
+    public Mono<JoinEventResponse> joinEvent(final String eventId, final JoinEventRequest joinEventRequest) {
+        return offload("join", () -> joinEventBlocking(eventId, joinEventRequest));
+    }
+
+    public Mono<BulkJoinEventResponse> bulkJoinEvent(final String eventId, final BulkJoinEventRequest request) {
+        return offload("bulk join", () -> bulkJoinEventBlocking(eventId, request));
+    }
+
+    public Mono<EndEventResponse> endEvent(final String eventId, final EndEventRequest endEventRequest) {
+        return offload("end", () -> endEventBlocking(eventId, endEventRequest));
+    }
 
-    public CreateEventResponse createEvent(final CreateEventRequest eventRequest) {
+    // Таймаут не прерывает вызов Redis, но запрос не висит дольше timeout
+    private <T> Mono<T> offload(final String operation, final Callable<T> call) {
+        return Mono.fromCallable(call)
+            .subscribeOn(Schedulers.boundedElastic())
+            .timeout(timeout)
+            .onErrorMap(TimeoutException.class, e -> new ResponseStatusException(
+                HttpStatus.SERVICE_UNAVAILABLE, "Event store timed out on " + operation, e));
+    }
+
+    // Синхронные варианты — для boundedElastic и бенчмарка EventServiceBenchmark
+    CreateEventResponse createEventBlocking(final CreateEventRequest eventRequest) {
         final String clientId = UUID.randomUUID().toString();
         final String eventId = UUID.randomUUID().toString();
 
         log.info("Creating new event: eventId={}, creatorId={}", eventId, clientId);
 
+        final String ideaExtractor = eventRequest.getIdeaExtractor();
+        if (ideaExtractor != null && !ideaExtractorRegistry.isKnown(ideaExtractor)) {
+            throw new UnknownIdeaExtractorException(ideaExtractor);
+        }
+
         final Event event = Event.builder()
             .eventId(eventId)
             .creatorClientId(clientId)
             .status(EventStatus.ACTIVE)
             .createdAt(Instant.now())
+            // Изменяемая HashMap: Redis-сериализатор с default typing не восстанавливает Map.of(...)
+            .metadata(ideaExtractor == null
+                ? null
+                : new HashMap<>(Map.of(IdeaExtractorRegistry.EVENT_METADATA_KEY, ideaExtractor)))
             .build();
 
         eventRepository.createEvent(event);
@@ -48,56 +119,87 @@ public class EventService {
             .build();
     }
 
-    public JoinEventResponse joinEvent(final String eventId, final JoinEventRequest joinEventRequest) {
-        log.info("Trying to join {} event with extra data {}", eventId, joinEventRequest);
+    JoinEventResponse joinEventBlocking(final String eventId, final JoinEventRequest joinEventRequest) {
+        log.debug("Trying to join {} event with extra data {}", eventId, joinEventRequest);
 
-        final Event event = eventRepository.findEventById(eventId)
-            .orElseThrow(() -> new RuntimeException("Event not found with id: " + eventId));
+        final String clientId = mintParticipants(eventId, 1).get(0);
 
-        if (event.getStatus() == EventStatus.ENDED) {
-            throw new RuntimeException("Cannot join ended event: " + eventId);
-        }
-
-        String clientId = UUID.randomUUID().toString();
+        log.debug("Client {} successfully joined event {}", clientId, eventId);
 
-        while (eventRepository.isParticipant(eventId, clientId)) {
-            clientId = UUID.randomUUID().toString();
-        }
+        return JoinEventResponse.builder()
+            .eventId(eventId)
+            .clientId(clientId)
+            .build();
+    }
 
-        eventRepository.addParticipant(eventId, clientId);
+    BulkJoinEventResponse bulkJoinEventBlocking(final String eventId, final BulkJoinEventRequest request) {
+        final List<String> clientIds = mintParticipants(eventId, request.getCount());
 
-        log.info("Client {} successfully joined event {}", clientId, eventId);
+        log.info("{} clients joined event {} in bulk", clientIds.size(), eventId);
 
-        return JoinEventResponse.builder()
+        return BulkJoinEventResponse.builder()
             .eventId(eventId)
-            .clientId(clientId)
+            .clientIds(clientIds)
             .build();
     }
 
-    public EndEventResponse endEvent(final String eventId, final EndEventRequest endEventRequest) {
+    // Проверка события и добавление — один атомарный вызов Redis на всех
+    private List<String> mintParticipants(final String eventId, final int count) {
+        final List<String> clientIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            clientIds.add(UUID.randomUUID().toString());
+        }
+        final RedisEventRepository.JoinResult result = eventRepository.joinEvent(eventId, clientIds);
+        checkJoined(eventId, result);
+        // Совпавший с уже выданным UUID (на практике не бывает) перевыпускаем по одному
+        for (final int collision : result.collisions()) {
+            clientIds.set(collision, mintParticipant(eventId));
+        }
+        return clientIds;
+    }
+
+    private String mintParticipant(final String eventId) {
+        while (true) {
+            final String clientId = UUID.randomUUID().toString();
+            final RedisEventRepository.JoinResult result = eventRepository.joinEvent(eventId, List.of(clientId));
+            checkJoined(eventId, result);
+            if (result.collisions().isEmpty()) {
+                return clientId;
+            }
+        }
+    }
+
+    private static void checkJoined(final String eventId, final RedisEventRepository.JoinResult result) {
+        switch (result.status()) {
+            case NOT_FOUND -> throw new EventNotFoundException(eventId);
+            case ENDED -> throw new EventEndedException(eventId);
+            case JOINED -> {
+                // ok
+            }
+        }
+    }
+
+    EndEventResponse endEventBlocking(final String eventId, final EndEventRequest endEventRequest) {
         log.info("Ending event: eventId={}", eventId);
 
         // 1. ПРОВЕРЯЕМ СУЩЕСТВУЕТ ЛИ СОБЫТИЕ
         final Event event = eventRepository.findEventById(eventId)
-            .orElseThrow(() -> new RuntimeException("Event not found with id: " + eventId));
+            .orElseThrow(() -> new EventNotFoundException(eventId));
 
         // 2. ПРОВЕРЯЕМ ПРАВА (только создатель может завершить)
-        if (!event.getCreatorClientId().equals(endEventRequest.getClientId())) {
-            throw new RuntimeException("Only event creator can end the event");
+        if (!Objects.equals(event.getCreatorClientId(), endEventRequest.getClientId())) {
+            throw new NotEventCreatorException(eventId);
         }
 
-        // 3. ОБНОВЛЯЕМ СТАТУС СОБЫТИЯ В REDIS
-        /* Если мы хотим именно обновлять статус
-        event.setStatus(EventStatus.ENDED);
-        event.setEndedAt(Instant.now());
-        eventRepository.updateEvent(event);
-        */
-
-        eventRepository.deleteEvent(eventId);
-        // 4. СОБИРАЕМ СТАТИСТИКУ ИЗ REDIS
-        final int participantCount = eventRepository.getParticipants(eventId).size();
+        // 3. СОБИРАЕМ СТАТИСТИКУ ИЗ REDIS
+        final long participantCount = eventRepository.getParticipantCount(eventId);
         // TODO: собрать информацию об идеях, голосованиях и т.д.
 
+        // 4. ОБНОВЛЯЕМ СТАТУС СОБЫТИЯ В REDIS: данные не удаляем сразу — их выгружают для отчёта
+        // (GET /events/{eventId}/export), а через event.retention Redis удалит их сам
+        eventRepository.endEvent(event, retention);
+        eventObserverFeed.complete(eventId);
+
         log.info("Event ended successfully: eventId={}, participants={}", eventId, participantCount);
 
         // 5. TODO: УВЕДОМИТЬ УЧАСТНИКОВ ЧЕРЕЗ WEBSOCKET
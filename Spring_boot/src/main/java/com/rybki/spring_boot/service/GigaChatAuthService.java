@@ -1,54 +1,180 @@
 package com.rybki.spring_boot.service;
 
+import java.time.Duration;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import com.rybki.spring_boot.model.dto.GigaChatTokenDto;
+import com.rybki.spring_boot.util.BackoffUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+/**
+ * Жизненный цикл OAuth-токена GigaChat.
+ * <p>
+ * Все, кто застал токен истёкшим, ждут одного общего обновления (single-flight).
+ * Обновление планируется заранее — за refresh-ahead до истечения, со случайным сдвигом,
+ * чтобы инстансы не ходили в OAuth одновременно. Сбой обновления — ошибка, а не пустой Mono:
+ * вызывающий видит, что идей нет из-за авторизации.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class GigaChatAuthService {
 
+    // Если OAuth не вернул expires_at — прежний период обновления
+    private static final Duration DEFAULT_REFRESH_PERIOD = Duration.ofMinutes(30);
+    // Нижняя граница паузы между плановыми обновлениями
+    private static final Duration MIN_REFRESH_DELAY = Duration.ofSeconds(5);
+
     private final WebClient webClient = WebClient.builder().build();
-    
+
     private final AtomicReference<String> accessToken = new AtomicReference<>();
     private final AtomicReference<Long> tokenExpiresAt = new AtomicReference<>();
 
+    private final AtomicReference<Mono<String>> inFlightRefresh = new AtomicReference<>();
+    private final AtomicReference<Disposable> scheduledRefresh = new AtomicReference<>();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    // Момент, с которого у нас нет валидного токена (0 — токен есть)
+    private final AtomicLong unavailableSinceNanos = new AtomicLong();
+
     @Value("${gigachat.oauth.url}")
     private String oauthUrl;
 
     @Value("${gigachat.auth.key}")
     private String authorizationKey;
 
+    @Value("${gigachat.token.refresh-ahead:5m}")
+    private Duration refreshAhead;
+
+    @Value("${gigachat.token.refresh-jitter:0.2}")
+    private double refreshJitter;
+
+    @Value("${gigachat.token.retry.max-attempts:3}")
+    private int retryMaxAttempts;
+
+    @Value("${gigachat.token.retry.initial-backoff:500ms}")
+    private Duration retryInitialBackoff;
+
+    @Value("${gigachat.token.retry.max-backoff:60s}")
+    private Duration retryMaxBackoff;
+
+    private final Timer refreshSuccess;
+    private final Timer refreshFailure;
+    private final Timer unavailable;
+
+    public GigaChatAuthService(final MeterRegistry meterRegistry) {
+        this.refreshSuccess = refreshTimer(meterRegistry, "success");
+        this.refreshFailure = refreshTimer(meterRegistry, "failure");
+        this.unavailable = Timer.builder("gigachat.token.unavailable")
+            .description("Periods without a valid GigaChat access token")
+            .register(meterRegistry);
+        Gauge.builder("gigachat.token.ttl", this, GigaChatAuthService::secondsUntilExpiry)
+            .description("Seconds until the current GigaChat token expires")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
     @PostConstruct
     public void init() {
         refreshToken()
             .doOnSuccess(token -> log.info("Initial GigaChat token obtained"))
             .doOnError(e -> log.error("Failed to obtain initial token", e))
+            .onErrorResume(e -> Mono.empty())
             .subscribe();
     }
 
-    @Scheduled(fixedRate = 1800000) // 30 минут
-    public void scheduledRefresh() {
-        refreshToken()
-            .doOnSuccess(token -> log.info("Scheduled token refresh completed"))
-            .doOnError(e -> log.error("Scheduled token refresh failed", e))
-            .subscribe();
+    @PreDestroy
+    public void shutdown() {
+        final Disposable next = scheduledRefresh.getAndSet(null);
+        if (next != null) {
+            next.dispose();
+        }
     }
 
+    /**
+     * Обновление токена; параллельные вызовы присоединяются к уже идущему запросу
+     */
     public Mono<String> refreshToken() {
+        return Mono.defer(() -> {
+            while (true) {
+                final Mono<String> running = inFlightRefresh.get();
+                if (running != null) {
+                    return running;
+                }
+                final Mono<String> refresh = requestToken()
+                    .doFinally(signal -> inFlightRefresh.set(null))
+                    .cache();
+                if (inFlightRefresh.compareAndSet(null, refresh)) {
+                    return refresh;
+                }
+            }
+        });
+    }
+
+    public Mono<String> getAccessToken() {
+        String currentToken = accessToken.get();
+        Long expiresAt = tokenExpiresAt.get();
+
+        if (currentToken == null || expiresAt == null || System.currentTimeMillis() >= expiresAt) {
+            unavailableSinceNanos.compareAndSet(0, System.nanoTime());
+            log.info("Token expired or not exists, joining refresh");
+            return refreshToken()
+                .onErrorMap(e -> new IllegalStateException("GigaChat access token is unavailable", e));
+        }
+
+        return Mono.just(currentToken);
+    }
+
+    private Mono<String> requestToken() {
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            return timedRequest(start);
+        });
+    }
+
+    private Mono<String> timedRequest(final long start) {
+        return Mono.defer(this::oauthCall)
+            .retryWhen(Retry.backoff(retryMaxAttempts, retryInitialBackoff)
+                .maxBackoff(retryMaxBackoff)
+                .doBeforeRetry(signal -> log.warn("Retrying GigaChat token refresh, attempt {}",
+                    signal.totalRetries() + 1, signal.failure())))
+            .doOnNext(tokenDto -> {
+                accessToken.set(tokenDto.accessToken());
+                tokenExpiresAt.set(tokenDto.expiresAt());
+                refreshSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                consecutiveFailures.set(0);
+                final long since = unavailableSinceNanos.getAndSet(0);
+                if (since != 0) {
+                    unavailable.record(System.nanoTime() - since, TimeUnit.NANOSECONDS);
+                }
+                log.info("Access token refreshed, expires at: {}", tokenDto.expiresAt());
+                scheduleNext(tokenDto.expiresAt());
+            })
+            .map(GigaChatTokenDto::accessToken)
+            .doOnError(e -> {
+                refreshFailure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                log.error("Failed to refresh access token", e);
+                scheduleAfterFailure();
+            });
+    }
+
+    private Mono<GigaChatTokenDto> oauthCall() {
         MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
         formData.add("scope", "GIGACHAT_API_PERS");
 
@@ -61,25 +187,57 @@ public class GigaChatAuthService {
             .body(BodyInserters.fromFormData(formData))
             .retrieve()
             .bodyToMono(GigaChatTokenDto.class)
-            .doOnNext(tokenDto -> {
-                accessToken.set(tokenDto.accessToken());
-                tokenExpiresAt.set(tokenDto.expiresAt());
-                log.info("Access token refreshed, expires at: {}", tokenDto.expiresAt());
-            })
-            .map(GigaChatTokenDto::accessToken)
-            .doOnError(e -> log.error("Failed to refresh access token", e))
-            .onErrorResume(e -> Mono.empty());
+            .switchIfEmpty(Mono.error(new IllegalStateException("Empty OAuth response")));
     }
 
-    public Mono<String> getAccessToken() {
-        String currentToken = accessToken.get();
-        Long expiresAt = tokenExpiresAt.get();
+    // Следующее обновление — за refresh-ahead до истечения, со случайным сдвигом назад.
+    // Токен живёт не дольше refresh-ahead (или часы разошлись) — на половине срока, но не чаще MIN_REFRESH_DELAY,
+    // иначе каждое обновление сразу планировало бы следующее и OAuth опрашивался бы в цикле
+    private void scheduleNext(final Long expiresAtMillis) {
+        if (expiresAtMillis == null) {
+            schedule(BackoffUtil.withJitter(DEFAULT_REFRESH_PERIOD, refreshJitter));
+            return;
+        }
+        final Duration untilExpiry = Duration.ofMillis(expiresAtMillis - System.currentTimeMillis());
+        if (untilExpiry.compareTo(refreshAhead) <= 0) {
+            log.warn("GigaChat token lifetime {} is not longer than refresh-ahead {}", untilExpiry, refreshAhead);
+        }
+        final Duration floor = max(untilExpiry.dividedBy(2), MIN_REFRESH_DELAY);
+        final Duration delay = max(BackoffUtil.withJitter(untilExpiry.minus(refreshAhead), refreshJitter), floor);
+        schedule(delay);
+    }
 
-        if (currentToken == null || expiresAt == null || System.currentTimeMillis() >= expiresAt) {
-            log.info("Token expired or not exists, refreshing...");
-            return refreshToken();
+    private static Duration max(final Duration a, final Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    // После исчерпания повторов пробуем снова с экспоненциальной паузой, не дожидаясь запросов
+    private void scheduleAfterFailure() {
+        final int failures = consecutiveFailures.getAndIncrement();
+        schedule(BackoffUtil.exponential(retryInitialBackoff, retryMaxBackoff, failures + retryMaxAttempts));
+    }
+
+    private void schedule(final Duration delay) {
+        final Disposable next = Mono.delay(delay)
+            .flatMap(t -> refreshToken())
+            .onErrorResume(e -> Mono.empty())
+            .subscribe();
+        final Disposable previous = scheduledRefresh.getAndSet(next);
+        if (previous != null) {
+            previous.dispose();
         }
+        log.debug("Next GigaChat token refresh in {}", delay);
+    }
 
-        return Mono.just(currentToken);
+    private double secondsUntilExpiry() {
+        final Long expiresAt = tokenExpiresAt.get();
+        return expiresAt == null ? 0 : Math.max(0, (expiresAt - System.currentTimeMillis()) / 1000.0);
+    }
+
+    private static Timer refreshTimer(final MeterRegistry meterRegistry, final String outcome) {
+        return Timer.builder("gigachat.token.refresh")
+            .description("GigaChat OAuth token refresh latency, including retries")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
     }
 }
@@ -0,0 +1,190 @@
+package com.rybki.spring_boot.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import com.rybki.spring_boot.client.ExtractionDeadline;
+import com.rybki.spring_boot.client.ExtractionRejectedException;
+import com.rybki.spring_boot.client.IdeaExtractionCache;
+import com.rybki.spring_boot.client.IdeaExtractorClient;
+import com.rybki.spring_boot.model.domain.Idea;
+import com.rybki.spring_boot.model.domain.TraceContext;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.Context;
+
+/**
+ * Микробатчинг транскриптов одного события в один запрос к LLM.
+ * <p>
+ * Фрагменты копятся по eventId в течение окна (или до лимита по числу/символам),
+ * затем уходят одним пакетным запросом; идеи раскладываются обратно по clientId.
+ * Тексты, уже лежащие в кэше, в батч не попадают.
+ */
+@Slf4j
+@Service
+public class IdeaBatcher {
+
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    private final IdeaExtractorClient ideaExtractorClient;
+    private final IdeaExtractionCache ideaExtractionCache;
+
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxSize;
+    private final int maxChars;
+
+    private final ConcurrentMap<String, PendingBatch> pending = new ConcurrentHashMap<>();
+
+    private final DistributionSummary batchSize;
+
+    public IdeaBatcher(
+        final IdeaExtractorClient ideaExtractorClient,
+        final IdeaExtractionCache ideaExtractionCache,
+        final MeterRegistry meterRegistry,
+        @Value("${idea.batch.enabled:true}") final boolean enabled,
+        @Value("${idea.batch.window:750ms}") final Duration window,
+        @Value("${idea.batch.max-size:8}") final int maxSize,
+        @Value("${idea.batch.max-chars:8000}") final int maxChars
+    ) {
+        this.ideaExtractorClient = ideaExtractorClient;
+        this.ideaExtractionCache = ideaExtractionCache;
+        this.enabled = enabled;
+        this.window = window;
+        this.maxSize = maxSize;
+        this.maxChars = maxChars;
+
+        this.batchSize = DistributionSummary.builder("idea.batch.size")
+            .description("Transcript fragments per LLM request")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Идеи для фрагмента одного участника; при выключенном батчинге — прямой вызов клиента
+     */
+    public Mono<List<Idea>> submit(final String eventId, final String clientId, final String text,
+        final String context) {
+        if (!enabled) {
+            return ideaExtractorClient.extractIdeas(text, context);
+        }
+        return ideaExtractionCache.lookup(text)
+            .switchIfEmpty(Mono.deferContextual(ctx -> enqueue(eventId, text, context,
+                ExtractionDeadline.deadlineNanos(ctx).orElse(NO_DEADLINE), TraceContext.current(ctx).orElse(null))));
+    }
+
+    private Mono<List<Idea>> enqueue(final String eventId, final String text, final String context,
+        final long deadlineNanos, final TraceContext trace) {
+        final Item item = new Item(text, context, deadlineNanos, trace, Sinks.one());
+        final PendingBatch[] full = new PendingBatch[1];
+        final PendingBatch[] created = new PendingBatch[1];
+
+        pending.compute(eventId, (key, batch) -> {
+            final PendingBatch target = batch != null ? batch : new PendingBatch();
+            if (batch == null) {
+                created[0] = target;
+            }
+            target.add(item);
+            if (target.items.size() >= maxSize || target.chars >= maxChars) {
+                full[0] = target;
+                return null;
+            }
+            return target;
+        });
+
+        if (full[0] != null) {
+            flush(eventId, full[0]);
+        } else if (created[0] != null) {
+            final PendingBatch batch = created[0];
+            Mono.delay(window)
+                .subscribe(t -> {
+                    // Батч мог уже уйти по лимиту размера
+                    if (pending.remove(eventId, batch)) {
+                        flush(eventId, batch);
+                    }
+                });
+        }
+        return item.result().asMono();
+    }
+
+    private void flush(final String eventId, final PendingBatch batch) {
+        final List<Item> items = batch.items;
+        batchSize.record(items.size());
+
+        if (items.size() == 1) {
+            final Item item = items.get(0);
+            // Кэш уже проверен в submit (и промах посчитан): второй поиск исказил бы hit ratio
+            ideaExtractorClient.extractIdeasAfterMiss(item.text(), item.context())
+                .defaultIfEmpty(Collections.emptyList())
+                .contextWrite(deadline(batch))
+                .contextWrite(TraceContext.with(item.trace()))
+                .subscribe(item.result()::tryEmitValue, item.result()::tryEmitError);
+            return;
+        }
+
+        // Пакет — один HTTP-запрос: он идёт участком первой трассированной сессии, остальные видны в логе
+        final TraceContext trace = items.stream().map(Item::trace).filter(Objects::nonNull).findFirst().orElse(null);
+        log.debug("Flushing idea batch: eventId={}, fragments={}, chars={}, traceIds={}", eventId, items.size(),
+            batch.chars, items.stream().map(Item::trace).filter(Objects::nonNull).map(TraceContext::traceId).toList());
+        final List<String> texts = items.stream().map(Item::text).toList();
+        final List<String> contexts = items.stream().map(Item::context).toList();
+        ideaExtractorClient.extractIdeasBatch(texts, contexts)
+            // Пакет живёт до самого раннего дедлайна среди своих фрагментов
+            .contextWrite(deadline(batch))
+            .contextWrite(TraceContext.with(trace))
+            .subscribe(
+                results -> {
+                    for (int i = 0; i < items.size(); i++) {
+                        final Item item = items.get(i);
+                        ideaExtractionCache.store(item.text(), results.get(i));
+                        item.result().tryEmitValue(results.get(i));
+                    }
+                },
+                e -> {
+                    // Отказ лимитера отдаём вызывающим: у них есть запасной движок
+                    if (e instanceof ExtractionRejectedException) {
+                        log.warn("Idea batch rejected by limiter: eventId={}, fragments={}", eventId, items.size());
+                        items.forEach(item -> item.result().tryEmitError(e));
+                        return;
+                    }
+                    log.error("Failed to extract ideas for batch: eventId={}, fragments={}", eventId, items.size(), e);
+                    items.forEach(item -> item.result().tryEmitValue(Collections.emptyList()));
+                },
+                () -> items.forEach(item -> item.result().tryEmitValue(Collections.emptyList()))
+            );
+    }
+
+    private static Function<Context, Context> deadline(final PendingBatch batch) {
+        return batch.deadlineNanos == NO_DEADLINE ? Function.identity() : ExtractionDeadline.at(batch.deadlineNanos);
+    }
+
+    private record Item(String text, String context, long deadlineNanos, TraceContext trace,
+                        Sinks.One<List<Idea>> result) {}
+
+    // Изменяется только внутри pending.compute(...)
+    private static final class PendingBatch {
+        private final List<Item> items = new ArrayList<>();
+        private int chars;
+        private long deadlineNanos = NO_DEADLINE;
+
+        private void add(final Item item) {
+            items.add(item);
+            // Контекст тоже едет в промпте, поэтому входит в лимит
+            chars += item.text().length() + (item.context() == null ? 0 : item.context().length());
+            if (item.deadlineNanos() != NO_DEADLINE
+                && (deadlineNanos == NO_DEADLINE || item.deadlineNanos() - deadlineNanos < 0)) {
+                deadlineNanos = item.deadlineNanos();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.rybki.spring_boot.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.rybki.spring_boot.model.domain.Idea;
+import com.rybki.spring_boot.model.domain.IdeaSimilarityIndex;
+import com.rybki.spring_boot.util.MinHash;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Схлопывание почти одинаковых идей внутри события.
+ * <p>
+ * Одну и ту же идею часто произносят несколько участников или она повторяется в соседних
+ * кусках транскрипта. Сравниваем название и описание через MinHash/LSH (см. IdeaSimilarityIndex):
+ * повтор не уходит клиенту как новая идея, а увеличивает счётчик упоминаний у исходной.
+ * Индексы событий, к которым давно не обращались, удаляются.
+ */
+@Slf4j
+@Service
+public class IdeaDeduplicator {
+
+    // Фиксированный seed: сигнатуры одинаковы на всех инстансах и после рестарта
+    private static final long MINHASH_SEED = 0x5eed1deaL;
+
+    private final MinHash minHash;
+    private final ConcurrentMap<String, IdeaSimilarityIndex> indexes = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+    private final int bands;
+    private final int rows;
+    private final double threshold;
+    private final int maxIdeasPerEvent;
+    private final long idleTtlNanos;
+
+    private final Counter uniqueIdeas;
+    private final Counter duplicateIdeas;
+    private final Timer lookupLatency;
+
+    public IdeaDeduplicator(
+        final MeterRegistry meterRegistry,
+        @Value("${idea.dedup.enabled:true}") final boolean enabled,
+        @Value("${idea.dedup.bands:16}") final int bands,
+        @Value("${idea.dedup.rows:4}") final int rows,
+        @Value("${idea.dedup.shingle-size:4}") final int shingleSize,
+        @Value("${idea.dedup.threshold:0.5}") final double threshold,
+        @Value("${idea.dedup.max-ideas-per-event:500}") final int maxIdeasPerEvent,
+        @Value("${idea.dedup.idle-ttl:2h}") final Duration idleTtl
+    ) {
+        this.enabled = enabled;
+        this.bands = bands;
+        this.rows = rows;
+        this.threshold = threshold;
+        this.maxIdeasPerEvent = maxIdeasPerEvent;
+        this.idleTtlNanos = idleTtl.toNanos();
+        this.minHash = new MinHash(bands * rows, shingleSize, MINHASH_SEED);
+
+        this.uniqueIdeas = ideasCounter(meterRegistry, "unique");
+        this.duplicateIdeas = ideasCounter(meterRegistry, "duplicate");
+        this.lookupLatency = Timer.builder("idea.dedup.lookup")
+            .description("Near-duplicate lookup latency")
+            .register(meterRegistry);
+        Gauge.builder("idea.dedup.events", indexes, ConcurrentMap::size)
+            .description("Events with an in-memory idea similarity index")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Уже известная идея события (с увеличенным счётчиком упоминаний) или empty, если идея новая
+     */
+    public Optional<IdeaSimilarityIndex.Duplicate> findDuplicate(final String eventId, final Idea idea) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        final long start = System.nanoTime();
+        final long[] signature = minHash.signature(idea.title() + " " + idea.description());
+        final Optional<IdeaSimilarityIndex.Duplicate> duplicate = indexes
+            .computeIfAbsent(eventId, key -> new IdeaSimilarityIndex(bands, rows, threshold, maxIdeasPerEvent))
+            .findOrAdd(idea, signature);
+        lookupLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (duplicate.isPresent()) {
+            duplicateIdeas.increment();
+            log.info("Near-duplicate idea collapsed: eventId={}, ideaId={}, duplicateOf={}, mentions={}",
+                eventId, idea.id(), duplicate.get().idea().id(), duplicate.get().mentions());
+        } else {
+            uniqueIdeas.increment();
+        }
+        return duplicate;
+    }
+
+    @Scheduled(fixedDelayString = "${idea.dedup.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        final long now = System.nanoTime();
+        indexes.entrySet().removeIf(e -> e.getValue().nanosSinceTouched(now) >= idleTtlNanos);
+    }
+
+    private static Counter ideasCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("idea.dedup.ideas")
+            .description("Extracted ideas checked for near-duplicates")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
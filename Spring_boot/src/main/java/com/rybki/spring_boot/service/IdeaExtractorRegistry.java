@@ -0,0 +1,120 @@
+package com.rybki.spring_boot.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.rybki.spring_boot.client.IdeaExtractor;
+import com.rybki.spring_boot.model.domain.redis.Event;
+import com.rybki.spring_boot.repository.RedisEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Выбор движка извлечения идей.
+ * <p>
+ * Событие может указать движок при создании (metadata.ideaExtractor), иначе берётся
+ * idea.extractor.default. Выбор события кэшируется локально, чтобы не ходить в Redis
+ * на каждый фрагмент. Если основной движок перегружен, используется idea.extractor.fallback.
+ */
+@Slf4j
+@Service
+public class IdeaExtractorRegistry {
+
+    public static final String EVENT_METADATA_KEY = "ideaExtractor";
+
+    private static final int MAX_CACHED_EVENTS = 10_000;
+
+    private final Map<String, IdeaExtractor> extractors;
+    private final RedisEventRepository eventRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final IdeaExtractor defaultExtractor;
+    private final IdeaExtractor fallbackExtractor;
+
+    // eventId -> имя движка; guarded by itself
+    private final Map<String, String> eventExtractors = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+            return size() > MAX_CACHED_EVENTS;
+        }
+    };
+
+    public IdeaExtractorRegistry(
+        final List<IdeaExtractor> extractors,
+        final RedisEventRepository eventRepository,
+        final MeterRegistry meterRegistry,
+        @Value("${idea.extractor.default:gigachat}") final String defaultName,
+        @Value("${idea.extractor.fallback:local}") final String fallbackName
+    ) {
+        this.extractors = extractors.stream()
+            .collect(Collectors.toUnmodifiableMap(IdeaExtractor::name, Function.identity()));
+        this.eventRepository = eventRepository;
+        this.meterRegistry = meterRegistry;
+        this.defaultExtractor = find(defaultName)
+            .orElseThrow(() -> new IllegalStateException("Unknown default idea extractor: " + defaultName));
+        this.fallbackExtractor = fallbackName.isBlank() ? null : find(fallbackName)
+            .orElseThrow(() -> new IllegalStateException("Unknown fallback idea extractor: " + fallbackName));
+        log.info("Idea extractors: available={}, default={}, fallback={}",
+            this.extractors.keySet(), defaultName, fallbackName);
+    }
+
+    public Optional<IdeaExtractor> find(final String name) {
+        return Optional.ofNullable(name).map(extractors::get);
+    }
+
+    public boolean isKnown(final String name) {
+        return extractors.containsKey(name);
+    }
+
+    /**
+     * Движок события: выбранный при создании или движок по умолчанию
+     */
+    public Mono<IdeaExtractor> forEvent(final String eventId) {
+        final String cached;
+        synchronized (eventExtractors) {
+            cached = eventExtractors.get(eventId);
+        }
+        if (cached != null) {
+            return Mono.just(find(cached).orElse(defaultExtractor));
+        }
+
+        return Mono.fromCallable(() -> eventRepository.findEventById(eventId)
+                .map(Event::getMetadata)
+                .map(metadata -> metadata.get(EVENT_METADATA_KEY))
+                .map(Object::toString)
+                .filter(this::isKnown)
+                .orElse(defaultExtractor.name()))
+            .subscribeOn(Schedulers.boundedElastic())
+            .doOnNext(name -> {
+                synchronized (eventExtractors) {
+                    eventExtractors.put(eventId, name);
+                }
+            })
+            // Ошибку Redis не кэшируем: следующий фрагмент попробует снова
+            .onErrorResume(e -> {
+                log.warn("Failed to resolve idea extractor for eventId={}, using default", eventId, e);
+                return Mono.just(defaultExtractor.name());
+            })
+            .map(name -> find(name).orElse(defaultExtractor));
+    }
+
+    /**
+     * Запасной движок при перегрузке основного; empty, если он не задан или совпадает с основным
+     */
+    public Optional<IdeaExtractor> fallbackFor(final IdeaExtractor primary) {
+        if (fallbackExtractor == null || fallbackExtractor == primary) {
+            return Optional.empty();
+        }
+        meterRegistry.counter("idea.extractor.fallback", "from", primary.name(), "to", fallbackExtractor.name())
+            .increment();
+        return Optional.of(fallbackExtractor);
+    }
+}
@@ -0,0 +1,202 @@
+package com.rybki.spring_boot.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.context.ContextView;
+
+/**
+ * Очередь обработки текстов от STT.
+ * <p>
+ * Тексты одного участника (eventId, clientId) обрабатываются строго по одному и в порядке прихода,
+ * разные участники — параллельно, но не больше max-concurrency одновременно. Всего в очереди
+ * не больше max-queued текстов: сверх этого {@link #submit} не завершается, пока не освободится место,
+ * и цикл приёма STT перестаёт читать сокет.
+ * <p>
+ * groupBy + flatMap из Reactor здесь не подходит: при числе участников больше concurrency
+ * новые группы не получают подписчика и поток встаёт.
+ */
+@Slf4j
+@Service
+public class IdeaIngestionQueue {
+
+    private final Object lock = new Object();
+
+    private final int maxConcurrency;
+    private final int maxQueued;
+
+    // guarded by lock
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private final Deque<Lane> ready = new ArrayDeque<>();
+    private final Deque<Blocked> blocked = new ArrayDeque<>();
+    private int queued;
+    private int running;
+
+    private final Timer lag;
+    private final Timer blockedWait;
+
+    public IdeaIngestionQueue(
+        final MeterRegistry meterRegistry,
+        @Value("${idea.ingest.max-concurrency:16}") final int maxConcurrency,
+        @Value("${idea.ingest.max-queued:500}") final int maxQueued
+    ) {
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueued = maxQueued;
+
+        this.lag = Timer.builder("idea.ingest.lag")
+            .description("Time from receiving an STT text to the start of its processing")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.blockedWait = Timer.builder("idea.ingest.blocked")
+            .description("Time the STT receive loop waited for space in the ingestion queue")
+            .register(meterRegistry);
+        Gauge.builder("idea.ingest.queued", this, IdeaIngestionQueue::getQueued)
+            .description("STT texts waiting for processing")
+            .register(meterRegistry);
+        Gauge.builder("idea.ingest.running", this, IdeaIngestionQueue::getRunning)
+            .description("STT texts being processed")
+            .register(meterRegistry);
+        Gauge.builder("idea.ingest.speakers", this, IdeaIngestionQueue::getSpeakers)
+            .description("Speakers with queued or running texts")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Поставить обработку текста участника в очередь. Mono завершается, когда задача принята
+     * (а не когда выполнена); при переполненной очереди — когда освободится место.
+     * Задача выполняется с Reactor Context подписчика submit.
+     */
+    public Mono<Void> submit(final String eventId, final String clientId, final Supplier<Mono<Void>> job) {
+        return Mono.create(sink -> {
+            final Task task = new Task(eventId + "/" + clientId, job, sink.contextView(), System.nanoTime());
+            final boolean accepted;
+            synchronized (lock) {
+                accepted = blocked.isEmpty() && queued < maxQueued;
+                if (accepted) {
+                    enqueue(task);
+                } else {
+                    blocked.addLast(new Blocked(task, sink));
+                }
+            }
+            if (accepted) {
+                sink.success();
+            }
+            drain();
+        });
+    }
+
+    // guarded by lock
+    private void enqueue(final Task task) {
+        final Lane lane = lanes.computeIfAbsent(task.key, k -> new Lane());
+        lane.tasks.addLast(task);
+        queued++;
+        if (!lane.active && lane.tasks.size() == 1) {
+            ready.addLast(lane);
+        }
+    }
+
+    private void drain() {
+        final List<Task> toStart = new ArrayList<>();
+        final List<Blocked> toAccept = new ArrayList<>();
+        synchronized (lock) {
+            while (running < maxConcurrency && !ready.isEmpty()) {
+                final Lane lane = ready.pollFirst();
+                lane.active = true;
+                running++;
+                queued--;
+                toStart.add(lane.tasks.pollFirst());
+            }
+            while (!blocked.isEmpty() && queued < maxQueued) {
+                final Blocked b = blocked.pollFirst();
+                enqueue(b.task);
+                toAccept.add(b);
+            }
+        }
+
+        final long now = System.nanoTime();
+        for (final Blocked b : toAccept) {
+            blockedWait.record(now - b.task.receivedAtNanos, TimeUnit.NANOSECONDS);
+            b.sink.success();
+        }
+        for (final Task task : toStart) {
+            start(task, now);
+        }
+        // Принятые из ожидания задачи могли попасть в свободные дорожки
+        if (!toAccept.isEmpty()) {
+            drain();
+        }
+    }
+
+    private void start(final Task task, final long now) {
+        lag.record(now - task.receivedAtNanos, TimeUnit.NANOSECONDS);
+        Mono.defer(task.job)
+            .contextWrite(task.context)
+            .doOnError(e -> log.error("Ingestion task failed for {}", task.key, e))
+            .onErrorResume(e -> Mono.empty())
+            .doFinally(signal -> finish(task.key))
+            .subscribe();
+    }
+
+    private void finish(final String key) {
+        synchronized (lock) {
+            running--;
+            final Lane lane = lanes.get(key);
+            lane.active = false;
+            if (lane.tasks.isEmpty()) {
+                lanes.remove(key);
+            } else {
+                ready.addLast(lane);
+            }
+        }
+        drain();
+    }
+
+    public int getQueued() {
+        synchronized (lock) {
+            return queued + blocked.size();
+        }
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public int getRunning() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    public int getSpeakers() {
+        synchronized (lock) {
+            return lanes.size();
+        }
+    }
+
+    private record Task(String key, Supplier<Mono<Void>> job, ContextView context, long receivedAtNanos) {}
+
+    private record Blocked(Task task, MonoSink<Void> sink) {}
+
+    /**
+     * Очередь одного участника; в работе не больше одной задачи
+     */
+    private static final class Lane {
+        private final Deque<Task> tasks = new ArrayDeque<>();
+        // guarded by lock
+        private boolean active;
+    }
+}
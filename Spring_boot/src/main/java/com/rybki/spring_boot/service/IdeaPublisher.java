@@ -0,0 +1,65 @@
+package com.rybki.spring_boot.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import com.rybki.spring_boot.model.domain.Idea;
+import com.rybki.spring_boot.model.domain.IdeaSimilarityIndex;
+import com.rybki.spring_boot.model.domain.redis.IdeaMentions;
+import com.rybki.spring_boot.model.domain.redis.IdeaStatus;
+import com.rybki.spring_boot.util.TextUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Последний этап конвейера идей: стабильный ID → схлопывание повторов → запись → рассылка.
+ * <p>
+ * ID выводится из события и нормализованного текста идеи, поэтому повторная обработка
+ * того же результата (повтор после сбоя, переотправка) перезаписывает ту же запись.
+ * Запись в Redis идёт через write-behind буфер и не задерживает рассылку участникам.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IdeaPublisher {
+
+    private final IdeaDeduplicator ideaDeduplicator;
+    private final IdeaWriteBehindBuffer writeBehindBuffer;
+    private final ClientNotificationService clientNotificationService;
+
+    public Mono<Void> publish(final String eventId, final String clientId, final String sourceText,
+        final Idea extracted) {
+        return Mono.defer(() -> {
+            final Idea idea = new Idea(stableId(eventId, extracted), extracted.title(), extracted.description());
+
+            final Optional<IdeaSimilarityIndex.Duplicate> duplicate = ideaDeduplicator.findDuplicate(eventId, idea);
+            if (duplicate.isPresent()) {
+                final String ideaId = duplicate.get().idea().id();
+                final int mentions = duplicate.get().mentions();
+                writeBehindBuffer.saveMentions(new IdeaMentions(eventId, ideaId, mentions));
+                return clientNotificationService.broadcastMention(eventId, ideaId, mentions);
+            }
+
+            writeBehindBuffer.saveIdea(com.rybki.spring_boot.model.domain.redis.Idea.builder()
+                .ideaId(idea.id())
+                .eventId(eventId)
+                .clientId(clientId)
+                .title(idea.title())
+                .description(idea.description())
+                .status(IdeaStatus.PENDING)
+                .createdAt(Instant.now())
+                .sourceText(sourceText)
+                .build());
+            return clientNotificationService.broadcastIdea(eventId, clientId, idea);
+        });
+    }
+
+    static String stableId(final String eventId, final Idea idea) {
+        final String content = TextUtil.normalize(idea.title() + " " + idea.description());
+        return UUID.nameUUIDFromBytes((eventId + '\n' + content).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+}
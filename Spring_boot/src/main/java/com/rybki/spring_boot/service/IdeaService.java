@@ -1,32 +1,115 @@
 package com.rybki.spring_boot.service;
 
+import com.rybki.spring_boot.client.ExtractionDeadline;
+import com.rybki.spring_boot.client.ExtractionRejectedException;
+import com.rybki.spring_boot.client.IdeaExtractor;
 import com.rybki.spring_boot.client.IdeaExtractorClient;
 import com.rybki.spring_boot.model.domain.Idea;
+import com.rybki.spring_boot.model.domain.redis.TranscriptSegment;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class IdeaService {
 
+    private final IdeaBatcher ideaBatcher;
     private final IdeaExtractorClient ideaExtractorClient;
-    private final ClientNotificationService clientNotificationService;
+    private final IdeaExtractorRegistry ideaExtractorRegistry;
+    private final IdeaPublisher ideaPublisher;
+    private final RollingContextManager rollingContextManager;
+    private final InformationDensityFilter informationDensityFilter;
+    private final IdeaIngestionQueue ideaIngestionQueue;
+    private final PipelineMetrics pipelineMetrics;
+    private final IdeaWriteBehindBuffer ideaWriteBehindBuffer;
 
+    // Потоковый режим GigaChat: каждая идея уходит клиенту сразу, без батчинга
+    @Value("${idea.streaming.enabled:false}")
+    private boolean streamingEnabled;
+
+    @Value("${idea.deadline:20s}")
+    private Duration ideaDeadline;
+
+    /**
+     * Текст от STT: в расшифровку события, затем фильтр плотности и очередь участника. Mono завершается,
+     * когда текст принят в очередь, отброшен или придержан фильтром (придержанный фильтр поставит
+     * в очередь сам), — обработка идёт дальше в порядке прихода.
+     */
     public Mono<Void> processText(String clientId, String eventId, String text) {
-        return ideaExtractorClient.extractIdeas(text)
-            .flatMap(ideas -> processIdeas(clientId, eventId, ideas))
-            .doOnSuccess(v -> log.info("Completed processing ideas for clientId={}, eventId={}", clientId, eventId))
-            .doOnError(e -> log.error("Failed to process text for clientId={}, eventId={}", clientId, eventId, e))
-            .onErrorResume(e -> Mono.empty());
+        // Расшифровка — целиком, включая фрагменты, которые фильтр не пустит к LLM
+        ideaWriteBehindBuffer.saveTranscript(TranscriptSegment.builder()
+            .eventId(eventId)
+            .clientId(clientId)
+            .text(text)
+            .receivedAt(Instant.now())
+            .build());
+        return informationDensityFilter.admit(eventId, clientId, text, admitted -> {
+            // Отсчёт дедлайна — с момента, когда фрагмент прошёл фильтр: время, пока фрагмент
+            // был придержан, не съедает бюджет извлечения, а ожидание в очереди — съедает
+            Function<Context, Context> deadline = ExtractionDeadline.within(ideaDeadline);
+            return ideaIngestionQueue.submit(eventId, clientId, () -> extractAndPublish(clientId, eventId, admitted)
+                .contextWrite(deadline)
+                .doOnSuccess(v -> log.info("Completed processing ideas for clientId={}, eventId={}",
+                    clientId, eventId))
+                .doOnError(e -> log.error("Failed to process text for clientId={}, eventId={}",
+                    clientId, eventId, e))
+                .onErrorResume(e -> Mono.empty()));
+        });
+    }
+
+    private Mono<Void> extractAndPublish(String clientId, String eventId, String text) {
+        return Mono.deferContextual(ctx -> {
+            pipelineMetrics.extractionStarted(ctx);
+            // Очередь участника запускает тексты по одному, так что контекст идёт в порядке прихода
+            String context = rollingContextManager.advance(eventId, clientId, text);
+
+            return ideaExtractorRegistry.forEvent(eventId)
+                .flatMap(extractor -> streamingEnabled && extractor == ideaExtractorClient
+                    ? streamText(clientId, eventId, text, context)
+                    : extract(eventId, clientId, text, context, extractor)
+                        .doOnNext(ideas -> pipelineMetrics.extractionFinished(ctx))
+                        .doOnNext(ideas -> rollingContextManager.remember(eventId, clientId, ideas))
+                        .flatMap(ideas -> processIdeas(clientId, eventId, text, ideas)));
+        });
+    }
+
+    // GigaChat идёт через батчер; при отказе лимитера — запасной движок, если он настроен
+    private Mono<List<Idea>> extract(String eventId, String clientId, String text, String context,
+                                     IdeaExtractor extractor) {
+        Mono<List<Idea>> ideas = extractor == ideaExtractorClient
+            ? ideaBatcher.submit(eventId, clientId, text, context)
+            : extractor.extractIdeas(text, context);
+        return ideas.onErrorResume(ExtractionRejectedException.class, e -> ideaExtractorRegistry.fallbackFor(extractor)
+            .map(fallback -> fallback.extractIdeas(text, context))
+            .orElseGet(() -> Mono.error(e)));
+    }
+
+    private Mono<Void> streamText(String clientId, String eventId, String text, String context) {
+        return ideaExtractorClient.streamIdeas(text, context)
+            .onErrorResume(ExtractionRejectedException.class, e -> ideaExtractorRegistry.fallbackFor(ideaExtractorClient)
+                .map(fallback -> fallback.extractIdeas(text, context).flatMapIterable(ideas -> ideas))
+                .orElseGet(() -> Flux.error(e)))
+            .doOnNext(idea -> rollingContextManager.remember(eventId, clientId, List.of(idea)))
+            .concatMap(idea -> Mono.deferContextual(ctx -> {
+                // Для пользователя извлечение закончено с первой идеей
+                pipelineMetrics.extractionFinished(ctx);
+                return ideaPublisher.publish(eventId, clientId, text, idea);
+            }))
+            .then();
     }
 
-    private Mono<Void> processIdeas(String clientId, String eventId, List<Idea> ideas) {
+    private Mono<Void> processIdeas(String clientId, String eventId, String text, List<Idea> ideas) {
         if (ideas == null || ideas.isEmpty()) {
             log.info("No ideas found for clientId={}, eventId={}", clientId, eventId);
             return Mono.empty();
@@ -35,7 +118,7 @@ public class IdeaService {
         log.info("Processing {} ideas for clientId={}, eventId={}", ideas.size(), clientId, eventId);
 
         return Flux.fromIterable(ideas)
-            .flatMap(idea -> clientNotificationService.sendIdeaToClient(clientId, eventId, idea))
+            .concatMap(idea -> ideaPublisher.publish(eventId, clientId, text, idea))
             .then();
     }
 }
@@ -0,0 +1,198 @@
+package com.rybki.spring_boot.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.rybki.spring_boot.model.domain.redis.Idea;
+import com.rybki.spring_boot.model.domain.redis.IdeaMentions;
+import com.rybki.spring_boot.model.domain.redis.TranscriptSegment;
+import com.rybki.spring_boot.repository.RedisIdeaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Отложенная пакетная запись идей и расшифровки в Redis (write-behind).
+ * <p>
+ * Публикация идеи только кладёт её в буфер; запись идёт пакетами через pipeline — по таймеру
+ * или когда набрался batch-size. Повторные записи одной идеи схлопываются (побеждает последняя).
+ * При сбое пакет возвращается в буфер и пишется снова: операции идемпотентны (at-least-once).
+ * На остановке буфер дописывается синхронно.
+ */
+@Slf4j
+@Service
+public class IdeaWriteBehindBuffer {
+
+    private final RedisIdeaRepository ideaRepository;
+
+    private final ConcurrentMap<String, Idea> pendingIdeas = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, IdeaMentions> pendingMentions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TranscriptSegment> pendingTranscript = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private final int batchSize;
+    private final int shutdownAttempts;
+    private final Duration shutdownRetryDelay;
+
+    private final Counter written;
+    private final Counter failures;
+    private final Timer flushLatency;
+
+    public IdeaWriteBehindBuffer(
+        final RedisIdeaRepository ideaRepository,
+        final MeterRegistry meterRegistry,
+        @Value("${idea.persist.batch-size:200}") final int batchSize,
+        @Value("${idea.persist.shutdown-attempts:5}") final int shutdownAttempts,
+        @Value("${idea.persist.shutdown-retry-delay:500ms}") final Duration shutdownRetryDelay
+    ) {
+        this.ideaRepository = ideaRepository;
+        this.batchSize = batchSize;
+        this.shutdownAttempts = shutdownAttempts;
+        this.shutdownRetryDelay = shutdownRetryDelay;
+
+        this.written = Counter.builder("idea.persist.written")
+            .description("Idea records and mention counters written to Redis")
+            .register(meterRegistry);
+        this.failures = Counter.builder("idea.persist.failures")
+            .description("Failed write-behind flushes (batch re-queued)")
+            .register(meterRegistry);
+        this.flushLatency = Timer.builder("idea.persist.flush")
+            .description("Write-behind pipeline flush latency")
+            .register(meterRegistry);
+        Gauge.builder("idea.persist.pending", this, IdeaWriteBehindBuffer::getPendingCount)
+            .description("Idea writes waiting in the write-behind buffer")
+            .register(meterRegistry);
+    }
+
+    public void saveIdea(final Idea idea) {
+        pendingIdeas.put(idea.getIdeaId(), idea);
+        flushIfFull();
+    }
+
+    public void saveMentions(final IdeaMentions mentions) {
+        mergeMentions(mentions);
+        flushIfFull();
+    }
+
+    public void saveTranscript(final TranscriptSegment segment) {
+        pendingTranscript.put(segmentKey(segment), segment);
+        flushIfFull();
+    }
+
+    @Scheduled(fixedDelayString = "${idea.persist.flush-interval-ms:250}")
+    public void scheduledFlush() {
+        flushAll();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (int attempt = 1; attempt <= shutdownAttempts && getPendingCount() > 0; attempt++) {
+            if (!flushAll()) {
+                log.warn("Write-behind flush on shutdown incomplete, attempt {}/{}", attempt, shutdownAttempts);
+                sleep(shutdownRetryDelay);
+            }
+        }
+        if (getPendingCount() > 0) {
+            log.error("Write-behind buffer not fully persisted on shutdown: {} writes lost", getPendingCount());
+        }
+    }
+
+    public int getPendingCount() {
+        return pendingIdeas.size() + pendingMentions.size() + pendingTranscript.size();
+    }
+
+    private void flushIfFull() {
+        if (getPendingCount() >= batchSize && !flushing.get()) {
+            Schedulers.boundedElastic().schedule(this::flushAll);
+        }
+    }
+
+    // Пишет пакетами, пока буфер не опустеет; false — запись не удалась или уже идёт в другом потоке
+    private boolean flushAll() {
+        if (!flushing.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            while (getPendingCount() > 0) {
+                if (!flushBatch()) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    private boolean flushBatch() {
+        final List<Idea> ideas = drain(pendingIdeas, batchSize);
+        final List<IdeaMentions> mentions = drain(pendingMentions, batchSize - ideas.size());
+        final List<TranscriptSegment> transcript = drain(pendingTranscript, batchSize - ideas.size() - mentions.size());
+        if (ideas.isEmpty() && mentions.isEmpty() && transcript.isEmpty()) {
+            return true;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            ideaRepository.saveBatch(ideas, mentions, transcript);
+            written.increment(ideas.size() + mentions.size() + transcript.size());
+            return true;
+        } catch (final Exception e) {
+            failures.increment();
+            log.warn("Write-behind flush failed, re-queueing {} ideas, {} mention counters and {} transcript segments",
+                ideas.size(), mentions.size(), transcript.size(), e);
+            // Более свежая версия, пришедшая за время записи, важнее возвращаемой
+            ideas.forEach(idea -> pendingIdeas.putIfAbsent(idea.getIdeaId(), idea));
+            mentions.forEach(this::mergeMentions);
+            transcript.forEach(segment -> pendingTranscript.putIfAbsent(segmentKey(segment), segment));
+            return false;
+        } finally {
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Счётчик только растёт: при гонке сохраняем больший
+    private void mergeMentions(final IdeaMentions mentions) {
+        pendingMentions.merge(mentions.ideaId(), mentions,
+            (old, update) -> update.mentions() >= old.mentions() ? update : old);
+    }
+
+    // Фрагмент неизменяем: ключ только для того, чтобы повтор не попал в пакет дважды
+    private static String segmentKey(final TranscriptSegment segment) {
+        return segment.getEventId() + '/' + segment.getClientId() + '/' + segment.getReceivedAt().toEpochMilli()
+            + '/' + segment.getText().hashCode();
+    }
+
+    private static <T> List<T> drain(final ConcurrentMap<String, T> pending, final int limit) {
+        final List<T> batch = new ArrayList<>();
+        final Iterator<String> keys = pending.keySet().iterator();
+        while (batch.size() < limit && keys.hasNext()) {
+            final T value = pending.remove(keys.next());
+            if (value != null) {
+                batch.add(value);
+            }
+        }
+        return batch;
+    }
+
+    private static void sleep(final Duration delay) {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
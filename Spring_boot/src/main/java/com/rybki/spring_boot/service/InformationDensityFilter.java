@@ -0,0 +1,204 @@
+package com.rybki.spring_boot.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.rybki.spring_boot.client.LocalIdeaExtractor;
+import com.rybki.spring_boot.util.TextUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+/**
+ * Дешёвый фильтр перед извлечением идей: не тратить вызов LLM на "да, хорошо, угу".
+ * <p>
+ * Текст оценивается по числу значимых слов, лексическому разнообразию, доле служебных слов
+ * и наличию маркеров предложения. Чистые междометия отбрасываются. Короткие или бедные фрагменты
+ * придерживаются и склеиваются со следующим фрагментом того же участника. Если за hold-timeout
+ * продолжения не было, придержанный текст всё равно уходит дальше, если в нём есть хоть одно
+ * значимое слово, — идеи не теряются.
+ * <p>
+ * Придержанный текст считается принятым сразу: фильтр сам передаёт его дальше — склеенным
+ * со следующим фрагментом или по таймауту. Цикл приёма STT не ждёт продолжения речи.
+ */
+@Slf4j
+@Service
+public class InformationDensityFilter {
+
+    // Значимые по длине, но пустые по смыслу слова разговорной речи
+    private static final Set<String> FILLERS = Set.of(
+        "угу", "ага", "эээ", "ммм", "хорошо", "ладно", "окей", "понятно", "конечно", "согласен",
+        "согласна", "спасибо", "привет", "слышно", "слышите", "видно", "короче", "типа", "значит", "вообще"
+    );
+
+    private final LocalIdeaExtractor localIdeaExtractor;
+
+    private final boolean enabled;
+    private final int minContentWords;
+    private final double minDensity;
+    private final double minDiversity;
+    private final int maxHeldChars;
+    private final Duration holdTimeout;
+
+    // guarded by this
+    private final Map<String, Held> held = new HashMap<>();
+
+    private final Counter passed;
+    private final Counter skipped;
+    private final Counter heldBack;
+    private final Counter merged;
+    private final Counter savedCalls;
+
+    public InformationDensityFilter(
+        final LocalIdeaExtractor localIdeaExtractor,
+        final MeterRegistry meterRegistry,
+        @Value("${idea.prefilter.enabled:true}") final boolean enabled,
+        @Value("${idea.prefilter.min-content-words:3}") final int minContentWords,
+        @Value("${idea.prefilter.min-density:0.3}") final double minDensity,
+        @Value("${idea.prefilter.min-diversity:0.4}") final double minDiversity,
+        @Value("${idea.prefilter.max-held-chars:1000}") final int maxHeldChars,
+        @Value("${idea.prefilter.hold-timeout:20s}") final Duration holdTimeout
+    ) {
+        this.localIdeaExtractor = localIdeaExtractor;
+        this.enabled = enabled;
+        this.minContentWords = minContentWords;
+        this.minDensity = minDensity;
+        this.minDiversity = minDiversity;
+        this.maxHeldChars = maxHeldChars;
+        this.holdTimeout = holdTimeout;
+
+        this.passed = chunkCounter(meterRegistry, "passed");
+        this.skipped = chunkCounter(meterRegistry, "skipped");
+        this.heldBack = chunkCounter(meterRegistry, "held");
+        this.merged = chunkCounter(meterRegistry, "merged");
+        this.savedCalls = Counter.builder("idea.prefilter.saved.calls")
+            .description("Extraction calls avoided by the prefilter (skipped or merged chunks)")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Пропустить текст через фильтр. Текст, который стоит отправить на извлечение (возможно,
+     * склеенный с придержанным ранее), уходит в downstream. Mono завершается вместе с downstream;
+     * если фрагмент отброшен или придержан — сразу: придержанный фильтр отдаст в downstream сам.
+     */
+    public Mono<Void> admit(final String eventId, final String clientId, final String text,
+                            final Function<String, Mono<Void>> downstream) {
+        if (!enabled) {
+            return downstream.apply(text);
+        }
+
+        return Mono.deferContextual(ctx -> {
+            final String key = eventId + "/" + clientId;
+            final Held hold;
+            final String candidate;
+            final Verdict verdict;
+            synchronized (this) {
+                final Held previous = held.remove(key);
+                candidate = previous == null ? text : previous.text() + "\n" + text;
+                if (previous != null) {
+                    // Придержанный фрагмент поедет вместе с этим — его собственный вызов не нужен
+                    merged.increment();
+                    savedCalls.increment();
+                }
+                verdict = candidate.length() >= maxHeldChars ? Verdict.PASS : evaluate(candidate);
+                hold = verdict == Verdict.HOLD ? new Held(candidate, downstream, ctx) : null;
+                if (hold != null) {
+                    held.put(key, hold);
+                }
+            }
+
+            switch (verdict) {
+                case PASS -> {
+                    passed.increment();
+                    return downstream.apply(candidate);
+                }
+                case SKIP -> {
+                    skipped.increment();
+                    savedCalls.increment();
+                    log.debug("Prefilter skipped chunk: clientId={}, eventId={}, text={}",
+                        clientId, eventId, candidate);
+                    return Mono.empty();
+                }
+                default -> {
+                    heldBack.increment();
+                    Mono.delay(holdTimeout).subscribe(t -> release(key, hold));
+                    return Mono.empty();
+                }
+            }
+        });
+    }
+
+    // Продолжения не было: отдаём придержанное дальше, если в нём есть хоть что-то значимое
+    private void release(final String key, final Held hold) {
+        synchronized (this) {
+            if (!held.remove(key, hold)) {
+                return;
+            }
+        }
+        if (contentWords(TextUtil.words(hold.text())) > 0) {
+            passed.increment();
+            Mono.defer(() -> hold.downstream().apply(hold.text()))
+                .contextWrite(hold.context())
+                .doOnError(e -> log.error("Failed to pass held chunk on: {}", key, e))
+                .onErrorResume(e -> Mono.empty())
+                .subscribe();
+        } else {
+            skipped.increment();
+            savedCalls.increment();
+        }
+    }
+
+    Verdict evaluate(final String text) {
+        final List<String> words = TextUtil.words(text);
+        final int content = contentWords(words);
+        if (content == 0) {
+            return Verdict.SKIP;
+        }
+        // Маркер предложения ("давайте", "предлагаю") — повод спросить LLM даже у короткой фразы
+        if (localIdeaExtractor.hasCue(text) && content >= 2) {
+            return Verdict.PASS;
+        }
+        if (content < minContentWords) {
+            return Verdict.HOLD;
+        }
+
+        final double density = (double) content / words.size();
+        final double diversity = (double) new HashSet<>(words).size() / words.size();
+        return density >= minDensity && diversity >= minDiversity ? Verdict.PASS : Verdict.HOLD;
+    }
+
+    private static int contentWords(final List<String> words) {
+        int content = 0;
+        for (final String word : words) {
+            if (TextUtil.isContentWord(word) && !FILLERS.contains(word)) {
+                content++;
+            }
+        }
+        return content;
+    }
+
+    private static Counter chunkCounter(final MeterRegistry meterRegistry, final String decision) {
+        return Counter.builder("idea.prefilter.chunks")
+            .description("Transcript chunks by prefilter decision")
+            .tag("decision", decision)
+            .register(meterRegistry);
+    }
+
+    enum Verdict {
+        PASS, SKIP, HOLD
+    }
+
+    /**
+     * Придержанный текст, куда его отдать и Reactor Context приёма (trace, метрики конвейера)
+     */
+    private record Held(String text, Function<String, Mono<Void>> downstream, ContextView context) {}
+}
@@ -0,0 +1,15 @@
+package com.rybki.spring_boot.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Завершить событие может только его создатель
+ */
+@ResponseStatus(HttpStatus.FORBIDDEN)
+public class NotEventCreatorException extends RuntimeException {
+
+    public NotEventCreatorException(final String eventId) {
+        super("Only event creator can end the event: " + eventId);
+    }
+}
@@ -0,0 +1,120 @@
+package com.rybki.spring_boot.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.rybki.spring_boot.model.domain.PipelineTimeline;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+import reactor.util.context.ContextView;
+
+/**
+ * Задержки по этапам конвейера аудио → идея у клиента.
+ * <p>
+ * idea.pipeline.stage{stage} — отдельные этапы:
+ * stt_send (очередь отправки в STT), stt (приём аудио → приём final_text),
+ * stt_aggregator (первый распознанный текст → отправка из агрегатора STT),
+ * queue (final_text → начало извлечения: фильтр и очередь участника),
+ * extraction, delivery (конец извлечения → уведомления записаны).
+ * idea.pipeline.latency{kind} — от приёма аудио до записи уведомления.
+ * Теги только из фиксированных наборов: никаких eventId/clientId.
+ */
+@Service
+public class PipelineMetrics {
+
+    public static final String STAGE_STT_SEND = "stt_send";
+    public static final String STAGE_STT = "stt";
+    public static final String STAGE_STT_AGGREGATOR = "stt_aggregator";
+    public static final String STAGE_QUEUE = "queue";
+    public static final String STAGE_EXTRACTION = "extraction";
+    public static final String STAGE_DELIVERY = "delivery";
+
+    public static final String KIND_IDEA = "idea";
+    public static final String KIND_MENTION = "mention";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> stages = new ConcurrentHashMap<>();
+    private final Map<String, Timer> endToEnd = new ConcurrentHashMap<>();
+
+    public PipelineMetrics(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * final_text получен; отметки STT — по его часам, поэтому сравниваются только между собой
+     */
+    public PipelineTimeline finalTextReceived(final Long audioReceivedAtMillis,
+                                              final Long transcribedAtMillis,
+                                              final Long flushedAtMillis) {
+        final PipelineTimeline timeline = new PipelineTimeline(audioReceivedAtMillis);
+        if (audioReceivedAtMillis != null) {
+            recordMillis(STAGE_STT, timeline.finalTextReceivedAtMillis() - audioReceivedAtMillis);
+        }
+        if (transcribedAtMillis != null && flushedAtMillis != null) {
+            recordMillis(STAGE_STT_AGGREGATOR, flushedAtMillis - transcribedAtMillis);
+        }
+        return timeline;
+    }
+
+    public void recordStage(final String stage, final long nanos) {
+        stage(stage).record(Math.max(0, nanos), TimeUnit.NANOSECONDS);
+    }
+
+    public void extractionStarted(final ContextView context) {
+        PipelineTimeline.current(context).ifPresent(timeline -> {
+            final long now = System.nanoTime();
+            timeline.markExtractionStart(now);
+            recordStage(STAGE_QUEUE, now - timeline.finalTextReceivedNanos());
+        });
+    }
+
+    public void extractionFinished(final ContextView context) {
+        PipelineTimeline.current(context).ifPresent(timeline -> {
+            if (timeline.extractionEndNanos() != 0 || timeline.extractionStartNanos() == 0) {
+                return;
+            }
+            final long now = System.nanoTime();
+            timeline.markExtractionEnd(now);
+            recordStage(STAGE_EXTRACTION, now - timeline.extractionStartNanos());
+        });
+    }
+
+    /**
+     * Уведомление об идее (или повторном упоминании) записано всем участникам
+     */
+    public void delivered(final ContextView context, final String kind) {
+        PipelineTimeline.current(context).ifPresent(timeline -> {
+            final long now = System.nanoTime();
+            if (timeline.extractionEndNanos() != 0) {
+                recordStage(STAGE_DELIVERY, now - timeline.extractionEndNanos());
+            }
+            // Без отметки аудио считаем от приёма final_text — так хотя бы видна доля бэкенда
+            final long total = timeline.audioReceivedAtMillis()
+                .map(audioAt -> TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - audioAt))
+                .orElse(now - timeline.finalTextReceivedNanos());
+            endToEnd(kind).record(Math.max(0, total), TimeUnit.NANOSECONDS);
+        });
+    }
+
+    private void recordMillis(final String stage, final long millis) {
+        recordStage(stage, TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private Timer stage(final String stage) {
+        return stages.computeIfAbsent(stage, s -> Timer.builder("idea.pipeline.stage")
+            .description("Latency of one stage of the audio-to-idea pipeline")
+            .tag("stage", s)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+
+    private Timer endToEnd(final String kind) {
+        return endToEnd.computeIfAbsent(kind, k -> Timer.builder("idea.pipeline.latency")
+            .description("Audio received to idea notification written")
+            .tag("kind", k)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+}
@@ -0,0 +1,90 @@
+package com.rybki.spring_boot.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.rybki.spring_boot.model.domain.Idea;
+import com.rybki.spring_boot.model.domain.RollingContext;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Скользящий контекст промпта по участникам события (см. RollingContext).
+ * <p>
+ * В LLM уходит только новый текст плюс ограниченный контекст: идеи на стыке фрагментов
+ * не теряются, а размер промпта не растёт с длиной события. Контексты участников,
+ * которые давно молчат, удаляются.
+ */
+@Service
+public class RollingContextManager {
+
+    private final ConcurrentMap<String, RollingContext> contexts = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+    private final int tailChars;
+    private final int summaryChars;
+    private final long idleTtlNanos;
+
+    private final DistributionSummary contextSize;
+
+    public RollingContextManager(
+        final MeterRegistry meterRegistry,
+        @Value("${idea.context.enabled:true}") final boolean enabled,
+        @Value("${idea.context.tail-chars:400}") final int tailChars,
+        @Value("${idea.context.summary-chars:600}") final int summaryChars,
+        @Value("${idea.context.idle-ttl:30m}") final Duration idleTtl
+    ) {
+        this.enabled = enabled;
+        this.tailChars = tailChars;
+        this.summaryChars = summaryChars;
+        this.idleTtlNanos = idleTtl.toNanos();
+
+        this.contextSize = DistributionSummary.builder("idea.context.size")
+            .description("Rolling context attached to an extraction prompt")
+            .baseUnit("chars")
+            .register(meterRegistry);
+        Gauge.builder("idea.context.speakers", contexts, ConcurrentMap::size)
+            .description("Speakers with a rolling prompt context")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Контекст для нового текста участника (null — контекста нет); текст становится частью хвоста
+     */
+    public String advance(final String eventId, final String clientId, final String text) {
+        if (!enabled) {
+            return null;
+        }
+        final String context = contexts
+            .computeIfAbsent(key(eventId, clientId), k -> new RollingContext(tailChars, summaryChars))
+            .advance(text);
+        contextSize.record(context == null ? 0 : context.length());
+        return context;
+    }
+
+    public void remember(final String eventId, final String clientId, final List<Idea> ideas) {
+        if (!enabled || ideas == null || ideas.isEmpty()) {
+            return;
+        }
+        final RollingContext context = contexts.get(key(eventId, clientId));
+        if (context != null) {
+            context.remember(ideas);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idea.context.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        final long now = System.nanoTime();
+        contexts.values().removeIf(context -> context.nanosSinceTouched(now) >= idleTtlNanos);
+    }
+
+    private static String key(final String eventId, final String clientId) {
+        return eventId + "/" + clientId;
+    }
+}
@@ -0,0 +1,219 @@
+package com.rybki.spring_boot.service;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
+
+import com.rybki.spring_boot.model.domain.ClientSession;
+import com.rybki.spring_boot.model.domain.ReplayLog;
+import com.rybki.spring_boot.model.domain.ResumableClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resume клиентских сессий после кратковременного обрыва WebSocket.
+ * <p>
+ * На "start" клиент получает resume-токен. При обрыве STT-поток не закрывается сразу:
+ * клиент висит в grace-окне, а исходящие сообщения копятся в его ReplayLog.
+ * Если за это время пришёл "resume" с токеном — привязываем новую сессию и дотправляем
+ * пропущенное; иначе по истечении окна reaper шлёт disconnect в STT.
+ * <p>
+ * Сам сервис в STT не ходит: от него зависит ClientNotificationService, а STT-клиент — от неё.
+ */
+@Slf4j
+@Service
+public class SessionResumeService {
+
+    private static final int TOKEN_BYTES = 24;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final ConcurrentMap<String, ResumableClient> byToken = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ResumableClient> byClient = new ConcurrentHashMap<>();
+    // Индекс eventId → clientIds для рассылки; меняется только внутри compute по ключу byClient
+    private final ConcurrentMap<String, Set<String>> clientsByEvent = new ConcurrentHashMap<>();
+
+    private final long graceNanos;
+    private final int replayCapacity;
+
+    private final Counter resumed;
+    private final Counter resumeFailed;
+    private final Counter expired;
+    private final Counter replayed;
+
+    public SessionResumeService(
+        final MeterRegistry meterRegistry,
+        @Value("${client.ws.resume-grace:30s}") final Duration grace,
+        @Value("${client.ws.replay-capacity:256}") final int replayCapacity
+    ) {
+        this.graceNanos = grace.toNanos();
+        this.replayCapacity = replayCapacity;
+
+        this.resumed = resumeCounter(meterRegistry, "resumed");
+        this.resumeFailed = resumeCounter(meterRegistry, "rejected");
+        this.expired = resumeCounter(meterRegistry, "expired");
+        this.replayed = Counter.builder("client.ws.replay.messages")
+            .description("Messages re-delivered to clients after resume")
+            .register(meterRegistry);
+        Gauge.builder("client.ws.resume.detached", this, SessionResumeService::getDetachedCount)
+            .description("Clients waiting in the resume grace window")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Привязка на "start". Если клиент ещё в grace-окне, продолжаем его состояние (токен и журнал),
+     * иначе заводим новое.
+     */
+    public ResumableClient attachOnStart(final String sessionId, final String clientId, final String eventId) {
+        return byClient.compute(clientKey(clientId, eventId), (key, existing) -> {
+            if (existing != null && existing.attach(sessionId)) {
+                return existing;
+            }
+            if (existing != null) {
+                byToken.remove(existing.getResumeToken());
+            }
+            final ResumableClient client = new ResumableClient(clientId, eventId, newToken(), replayCapacity);
+            client.attach(sessionId);
+            byToken.put(client.getResumeToken(), client);
+            clientsByEvent.computeIfAbsent(eventId, k -> ConcurrentHashMap.newKeySet()).add(clientId);
+            return client;
+        });
+    }
+
+    /**
+     * Привязка на "resume" по токену; пусто, если токен неизвестен или grace-окно истекло
+     */
+    public Optional<ResumableClient> resume(final String resumeToken, final String sessionId) {
+        final ResumableClient client = resumeToken == null ? null : byToken.get(resumeToken);
+        if (client == null || !client.attach(sessionId)) {
+            resumeFailed.increment();
+            return Optional.empty();
+        }
+        resumed.increment();
+        log.info("Resumed: clientId={}, eventId={}, sessionId={}", client.getClientId(), client.getEventId(),
+            sessionId);
+        return Optional.of(client);
+    }
+
+    /**
+     * Пропущенные клиентом сообщения (seq больше подтверждённого)
+     */
+    public List<ReplayLog.Entry> replayAfter(final ResumableClient client, final long lastSeq) {
+        final List<ReplayLog.Entry> entries = client.getReplayLog().after(lastSeq);
+        replayed.increment(entries.size());
+        return entries;
+    }
+
+    /**
+     * Записывает исходящее сообщение в журнал клиента; пусто, если клиент не подключался или уже завершён
+     */
+    public Optional<ReplayLog.Entry> record(final String clientId, final String eventId,
+        final LongFunction<String> serializer) {
+        return Optional.ofNullable(byClient.get(clientKey(clientId, eventId)))
+            .map(client -> client.getReplayLog().append(serializer));
+    }
+
+    /**
+     * Участники события, которым ещё можно доставить сообщение (подключённые и ждущие resume)
+     */
+    public List<String> clientIdsOf(final String eventId) {
+        final Set<String> clientIds = clientsByEvent.get(eventId);
+        return clientIds == null ? List.of() : List.copyOf(clientIds);
+    }
+
+    /**
+     * Обрыв сессии: клиент уходит в grace-окно, STT-поток остаётся жить.
+     * false — клиент не возобновляемый, поток нужно закрыть сразу.
+     */
+    public boolean detach(final ClientSession cs) {
+        final ResumableClient client = byClient.get(clientKey(cs.clientId(), cs.eventId()));
+        if (client == null) {
+            return false;
+        }
+        if (client.detach(cs.session().getId(), System.nanoTime())) {
+            log.info("Client detached, waiting for resume: clientId={}, eventId={}", cs.clientId(), cs.eventId());
+        }
+        // Иначе клиент уже переподключился другой сессией — поток принадлежит ей
+        return true;
+    }
+
+    /**
+     * Явное завершение: resume больше невозможен
+     */
+    public void release(final ClientSession cs) {
+        final ResumableClient client = byClient.get(clientKey(cs.clientId(), cs.eventId()));
+        if (client != null && remove(client)) {
+            client.release();
+            byToken.remove(client.getResumeToken());
+        }
+    }
+
+    /**
+     * Убирает клиентов, не вернувшихся за grace-окно; их STT-потоки нужно закрыть
+     */
+    public List<ResumableClient> expireDetached() {
+        final long now = System.nanoTime();
+        final List<ResumableClient> expiredClients = new ArrayList<>();
+        for (final ResumableClient client : byClient.values()) {
+            if (client.expireIfIdle(now, graceNanos)) {
+                remove(client);
+                byToken.remove(client.getResumeToken());
+                expiredClients.add(client);
+                expired.increment();
+                log.info("Resume window expired: clientId={}, eventId={}", client.getClientId(),
+                    client.getEventId());
+            }
+        }
+        return expiredClients;
+    }
+
+    public int getDetachedCount() {
+        return (int) byClient.values().stream().filter(ResumableClient::isDetached).count();
+    }
+
+    // Удаляет именно этого клиента (не заведённого заново на его месте) вместе с записью в индексе
+    private boolean remove(final ResumableClient client) {
+        final AtomicBoolean removed = new AtomicBoolean();
+        byClient.computeIfPresent(clientKey(client.getClientId(), client.getEventId()), (key, existing) -> {
+            if (existing != client) {
+                return existing;
+            }
+            clientsByEvent.computeIfPresent(client.getEventId(), (eventId, clientIds) -> {
+                clientIds.remove(client.getClientId());
+                return clientIds.isEmpty() ? null : clientIds;
+            });
+            removed.set(true);
+            return null;
+        });
+        return removed.get();
+    }
+
+    private String newToken() {
+        final byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String clientKey(final String clientId, final String eventId) {
+        return eventId + "/" + clientId;
+    }
+
+    private static Counter resumeCounter(final MeterRegistry meterRegistry, final String outcome) {
+        return Counter.builder("client.ws.resume")
+            .description("Session resume outcomes")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+}
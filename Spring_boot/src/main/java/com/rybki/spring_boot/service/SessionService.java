@@ -1,11 +1,14 @@
 package com.rybki.spring_boot.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.stream.Collectors;
 
 import com.rybki.spring_boot.model.domain.ClientSession;
+import com.rybki.spring_boot.model.domain.SessionActivity;
+import com.rybki.spring_boot.model.domain.TraceContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.socket.WebSocketSession;
@@ -18,11 +21,16 @@ import reactor.core.publisher.Mono;
 public class SessionService {
 
     private final ConcurrentMap<String, ClientSession> sessions = new ConcurrentHashMap<>();
+    // Индекс eventId → (clientId → сессия): рассылка по событию не перебирает все сессии сервера
+    private final ConcurrentMap<String, ConcurrentMap<String, ClientSession>> byEvent = new ConcurrentHashMap<>();
 
     // Регистрирует новую WS-сессию
-    public Mono<Void> register(final WebSocketSession session, final String clientId, final String eventId) {
+    public Mono<Void> register(final WebSocketSession session, final String clientId, final String eventId,
+                               final TraceContext trace) {
         return Mono.fromRunnable(() -> {
-            sessions.put(session.getId(), new ClientSession(clientId, eventId, session));
+            final ClientSession cs = new ClientSession(clientId, eventId, session, new SessionActivity(), trace);
+            sessions.put(session.getId(), cs);
+            index(cs);
             log.debug("Registered session: sessionId={}, clientId={}, eventId={}",
                 session.getId(), clientId, eventId);
         });
@@ -31,11 +39,34 @@ public class SessionService {
     // Удаляет WS-сессию
     public Mono<Void> unregister(final WebSocketSession session) {
         return Mono.fromRunnable(() -> {
-            sessions.remove(session.getId());
+            unindex(sessions.remove(session.getId()));
             log.debug("Unregistered session: sessionId={}", session.getId());
         });
     }
 
+    // Атомарно удаляет WS-сессию и возвращает её данные (пусто, если сессию уже удалили)
+    public Mono<ClientSession> evict(final WebSocketSession session) {
+        return Mono.fromSupplier(() -> unindex(sessions.remove(session.getId())))
+            .doOnNext(cs -> log.debug("Evicted session: sessionId={}, clientId={}, eventId={}",
+                session.getId(), cs.clientId(), cs.eventId()));
+    }
+
+    // Отмечает входящий фрейм (любой, включая PONG)
+    public void markRead(final WebSocketSession session) {
+        final ClientSession cs = sessions.get(session.getId());
+        if (cs != null) {
+            cs.activity().markRead();
+        }
+    }
+
+    // Отмечает прикладное сообщение от клиента
+    public void markMessage(final WebSocketSession session) {
+        final ClientSession cs = sessions.get(session.getId());
+        if (cs != null) {
+            cs.activity().markMessage();
+        }
+    }
+
     // Получить clientId и eventId сразу
     public Mono<ClientSession> getSessionData(final WebSocketSession session) {
         return Mono.justOrEmpty(sessions.get(session.getId()));
@@ -43,19 +74,42 @@ public class SessionService {
 
     // Получить все сессии для конкретного event
     public Flux<ClientSession> getSessionsForEvent(final String eventId) {
-        final List<ClientSession> list = sessions.values().stream()
-            .filter(cs -> cs.eventId().equals(eventId))
-            .collect(Collectors.toList());
-        return Flux.fromIterable(list);
+        final Map<String, ClientSession> clients = byEvent.get(eventId);
+        return clients == null ? Flux.empty() : Flux.fromIterable(List.copyOf(clients.values()));
     }
 
     // Получить WS-сессию по eventId и clientId
     public Mono<WebSocketSession> getSession(final String eventId, final String clientId) {
-        return Mono.justOrEmpty(
-            sessions.values().stream()
-                .filter(cs -> cs.eventId().equals(eventId) && cs.clientId().equals(clientId))
-                .map(ClientSession::session)
-                .findFirst()
-        );
+        final Map<String, ClientSession> clients = byEvent.get(eventId);
+        return Mono.justOrEmpty(clients == null ? null : clients.get(clientId)).map(ClientSession::session);
+    }
+
+    // Снимок всех сессий (для reaper'а)
+    public Collection<ClientSession> getAllSessions() {
+        return List.copyOf(sessions.values());
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    // Последняя зарегистрированная сессия клиента вытесняет предыдущую в индексе
+    private void index(final ClientSession cs) {
+        byEvent.compute(cs.eventId(), (eventId, clients) -> {
+            final ConcurrentMap<String, ClientSession> map = clients != null ? clients : new ConcurrentHashMap<>();
+            map.put(cs.clientId(), cs);
+            return map;
+        });
+    }
+
+    // Удаляет из индекса только эту сессию: клиент мог уже переподключиться новой
+    private ClientSession unindex(final ClientSession cs) {
+        if (cs != null) {
+            byEvent.computeIfPresent(cs.eventId(), (eventId, clients) -> {
+                clients.remove(cs.clientId(), cs);
+                return clients.isEmpty() ? null : clients;
+            });
+        }
+        return cs;
     }
 }
@@ -2,9 +2,12 @@ package com.rybki.spring_boot.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rybki.spring_boot.model.domain.PipelineTimeline;
+import com.rybki.spring_boot.model.domain.TraceContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 @Slf4j
 @Service
@@ -12,10 +15,17 @@ import org.springframework.stereotype.Service;
 public class SttResponseHandler {
 
     private final IdeaService ideaService;
+    private final SttStreamDeduplicator sttStreamDeduplicator;
+    private final PipelineMetrics pipelineMetrics;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * Разбор сообщения STT; Mono завершается, когда текст принят в обработку —
+     * до этого цикл приёма не берёт следующие сообщения. Значение — подтверждение,
+     * которое надо отправить обратно в STT (для нумерованных final_text).
+     */
     @SuppressWarnings("checkstyle:IllegalCatch")
-    public void handle(final String json) {
+    public Mono<String> handle(final String json) {
         try {
             final JsonNode node = objectMapper.readTree(json);
             final String type = node.path("type").asText();
@@ -24,11 +34,33 @@ public class SttResponseHandler {
                 final String clientId = node.path("clientId").asText();
                 final String eventId = node.path("eventId").asText();
                 final String text = node.path("text").asText();
+                // Старый STT шлёт тексты без номеров — тогда без дедупликации и подтверждений
+                final String streamId = node.path("streamId").asText(null);
+                final long seq = node.path("seq").asLong(0);
+                final boolean sequenced = streamId != null && seq > 0;
+                final TraceContext trace = TraceContext.parse(node.path(TraceContext.HEADER).asText(null))
+                    .orElse(null);
 
-                log.info("Received final_text from STT: clientId={}, eventId={}, text={}",
-                    clientId, eventId, text);
+                log.info("Received final_text from STT: clientId={}, eventId={}, streamId={}, seq={}, traceId={}, "
+                    + "text={}", clientId, eventId, streamId, seq, trace == null ? null : trace.traceId(), text);
 
-                ideaService.processText(clientId, eventId, text).subscribe();
+                // Повтор после переподключения: текст уже принят, STT нужно только подтверждение
+                if (sequenced && !sttStreamDeduplicator.firstDelivery(streamId, seq)) {
+                    return Mono.just(ack(streamId, seq));
+                }
+
+                final JsonNode timing = node.path("timing");
+                final PipelineTimeline timeline = pipelineMetrics.finalTextReceived(
+                    millisOrNull(timing, "audioReceivedAt"),
+                    millisOrNull(timing, "transcribedAt"),
+                    millisOrNull(timing, "flushedAt"));
+
+                final Mono<Void> accepted = ideaService.processText(clientId, eventId, text)
+                    .contextWrite(PipelineTimeline.with(timeline))
+                    .contextWrite(TraceContext.with(trace));
+                return sequenced
+                    ? accepted.then(Mono.fromSupplier(() -> ack(streamId, seq)))
+                    : accepted.then(Mono.empty());
 
             } else {
                 log.debug("Unknown STT message type: {}", type);
@@ -37,5 +69,20 @@ public class SttResponseHandler {
         } catch (Exception e) {
             log.error("Failed to handle STT message: {}", json, e);
         }
+        return Mono.empty();
+    }
+
+    private static Long millisOrNull(final JsonNode timing, final String field) {
+        final JsonNode value = timing.path(field);
+        return value.canConvertToLong() ? value.asLong() : null;
+    }
+
+    // Подтверждение накопительное: все номера потока до seq включительно приняты
+    private String ack(final String streamId, final long seq) {
+        return objectMapper.createObjectNode()
+            .put("type", "ack")
+            .put("streamId", streamId)
+            .put("seq", seq)
+            .toString();
     }
 }
@@ -1,42 +1,81 @@
 package com.rybki.spring_boot.service;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rybki.spring_boot.model.domain.TraceContext;
 import com.rybki.spring_boot.util.Base64Util;
 import com.rybki.spring_boot.websocket.SttWebSocketClient;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class SttRoutingService {
 
+    // PCM16 mono: два байта на отсчёт
+    private static final int BYTES_PER_SAMPLE = 2;
+
     private final SttWebSocketClient sttClient;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private final double bytesPerSecond;
+    private final long streamIdleNanos;
+    // Последнее аудио по потоку (eventId/clientId), System.nanoTime()
+    private final Map<String, Long> lastAudioNanos = new ConcurrentHashMap<>();
+
+    private final Counter audioSeconds;
+
+    public SttRoutingService(
+        final SttWebSocketClient sttClient,
+        final MeterRegistry meterRegistry,
+        @Value("${stt.audio.sample-rate:16000}") final int sampleRate,
+        @Value("${stt.audio.stream-idle:10s}") final Duration streamIdle
+    ) {
+        this.sttClient = sttClient;
+        this.bytesPerSecond = (double) sampleRate * BYTES_PER_SAMPLE;
+        this.streamIdleNanos = streamIdle.toNanos();
+
+        // rate() этого счётчика — секунды аудио в секунду, то есть сколько потоков реально говорят
+        this.audioSeconds = Counter.builder("stt.audio.forwarded")
+            .description("Audio forwarded to STT")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        Gauge.builder("stt.audio.streams", this, SttRoutingService::getActiveStreams)
+            .description("Audio streams that sent audio within stt.audio.stream-idle")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Потоки, присылавшие аудио за последние stream-idle; заодно забываем давно молчащие
+     */
+    public int getActiveStreams() {
+        final long now = System.nanoTime();
+        lastAudioNanos.values().removeIf(last -> now - last >= streamIdleNanos);
+        return lastAudioNanos.size();
+    }
+
     /**
-     * Пересылаем PCM16 байты на STT (реактивно)
+     * Пересылаем PCM16 байты на STT (реактивно); receivedAtMillis и trace STT возвращает в final_text
      */
-    public Mono<Void> forwardAudio(final String clientId, final String eventId, final byte[] pcmChunk) {
+    public Mono<Void> forwardAudio(final String clientId, final String eventId, final byte[] pcmChunk,
+                                   final long receivedAtMillis, final TraceContext trace) {
         return Mono.fromRunnable(() -> {
             try {
-                final String audioBase64 = Base64Util.encode(pcmChunk);
-
-                final Map<String, Object> payload = new HashMap<>();
-                payload.put("type", "audio");
-                payload.put("clientId", clientId);
-                payload.put("eventId", eventId);
-                payload.put("audio", audioBase64);
-
-                final String json = objectMapper.writeValueAsString(payload);
+                final String json = audioEnvelope(clientId, eventId, pcmChunk, receivedAtMillis, trace);
                 sttClient.sendToStt(json);
+                lastAudioNanos.put(eventId + "/" + clientId, System.nanoTime());
+                audioSeconds.increment(pcmChunk.length / bytesPerSecond);
 
                 log.debug("Forwarded audio to STT: clientId={}, eventId={}, size={} bytes",
                     clientId, eventId, pcmChunk.length);
@@ -49,6 +88,21 @@ public class SttRoutingService {
         }).subscribeOn(Schedulers.boundedElastic()).then();
     }
 
+    // Горячий путь: на каждый аудио-фрейм клиента (см. бенчмарк SttRoutingServiceBenchmark)
+    String audioEnvelope(final String clientId, final String eventId, final byte[] pcmChunk,
+                         final long receivedAtMillis, final TraceContext trace) throws JsonProcessingException {
+        final Map<String, Object> payload = new HashMap<>();
+        payload.put("type", "audio");
+        payload.put("clientId", clientId);
+        payload.put("eventId", eventId);
+        payload.put("audio", Base64Util.encode(pcmChunk));
+        payload.put("receivedAt", receivedAtMillis);
+        if (trace != null) {
+            payload.put(TraceContext.HEADER, trace.traceparent());
+        }
+        return objectMapper.writeValueAsString(payload);
+    }
+
     /**
      * Отправка события окончания аудио (реактивно)
      */
@@ -62,6 +116,7 @@ public class SttRoutingService {
 
                 final String json = objectMapper.writeValueAsString(payload);
                 sttClient.sendToStt(json);
+                lastAudioNanos.remove(eventId + "/" + clientId);
 
                 log.info("Sent disconnect to STT for clientId={}, eventId={}", clientId, eventId);
 
@@ -0,0 +1,82 @@
+package com.rybki.spring_boot.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.rybki.spring_boot.model.domain.SequenceWindow;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Повторы final_text по номерам потока STT.
+ * <p>
+ * STT нумерует тексты каждого потока (streamId) с 1 и после переподключения переотправляет
+ * всё, что бэкенд не подтвердил. Здесь каждый номер пропускается ровно один раз;
+ * пропуски в нумерации считаются метрикой, а не ошибкой.
+ */
+@Slf4j
+@Service
+public class SttStreamDeduplicator {
+
+    private final Map<String, SequenceWindow> windows = new ConcurrentHashMap<>();
+    private final long idleTtlNanos;
+
+    private final Counter accepted;
+    private final Counter duplicates;
+    private final Counter gaps;
+
+    public SttStreamDeduplicator(
+        final MeterRegistry meterRegistry,
+        @Value("${stt.dedup.idle-ttl:30m}") final Duration idleTtl
+    ) {
+        this.idleTtlNanos = idleTtl.toNanos();
+
+        this.accepted = resultCounter(meterRegistry, "accepted");
+        this.duplicates = resultCounter(meterRegistry, "duplicate");
+        this.gaps = Counter.builder("stt.final_text.gaps")
+            .description("final_text sequence numbers skipped by STT")
+            .register(meterRegistry);
+        Gauge.builder("stt.final_text.streams", windows, Map::size)
+            .description("STT streams tracked for duplicate detection")
+            .register(meterRegistry);
+    }
+
+    /**
+     * true — текст с этим номером пришёл впервые и его надо обработать
+     */
+    public boolean firstDelivery(final String streamId, final long seq) {
+        final SequenceWindow window = windows.computeIfAbsent(streamId, k -> new SequenceWindow());
+        final long gapsBefore = window.getGaps();
+        if (window.accept(seq) == SequenceWindow.Result.DUPLICATE) {
+            duplicates.increment();
+            log.info("Duplicate final_text skipped: streamId={}, seq={}", streamId, seq);
+            return false;
+        }
+        accepted.increment();
+        final long newGaps = window.getGaps() - gapsBefore;
+        if (newGaps > 0) {
+            gaps.increment(newGaps);
+            log.warn("final_text gap: streamId={}, {} missing before seq={}", streamId, newGaps, seq);
+        }
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${stt.dedup.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        final long now = System.nanoTime();
+        windows.values().removeIf(window -> window.nanosSinceTouched(now) >= idleTtlNanos);
+    }
+
+    private static Counter resultCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("stt.final_text")
+            .description("final_text messages by delivery result")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,295 @@
+package com.rybki.spring_boot.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.rybki.spring_boot.model.domain.Idea;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Запись и воспроизведение внешнего трафика: final_text от STT и ответов GigaChat.
+ * <p>
+ * RECORD — каждое входящее сообщение STT и результат каждого фрагмента, отправленного в GigaChat,
+ * пишутся в файл (NDJSON, одна запись на строку, время — от старта записи). Файл — одна запись
+ * одного прогона: при старте RECORD он перезаписывается, иначе отметки времени разных прогонов
+ * и ответы на одни и те же фрагменты смешались бы при воспроизведении.
+ * REPLAY — STT и GigaChat не вызываются: сообщения STT подаются в конвейер из файла с исходными
+ * интервалами (делёнными на speed; speed=0 — без пауз), а идеи по фрагменту берутся из записи.
+ * <p>
+ * Ответы GigaChat пишутся по фрагментам, а не по запросам: при воспроизведении пакеты батчера
+ * могут сложиться иначе, а фрагмент (текст + контекст) тот же. Если контекст разошёлся,
+ * ищем по одному тексту.
+ */
+@Slf4j
+@Component
+public class TrafficJournal {
+
+    public enum Mode {
+        OFF,
+        RECORD,
+        REPLAY
+    }
+
+    private static final String KIND_STT = "stt";
+    private static final String KIND_LLM = "llm";
+
+    // Пустые поля не пишем — журнал растёт на каждое сообщение STT
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private final Mode mode;
+    private final Path file;
+    private final double speed;
+    private final long startedAtNanos = System.nanoTime();
+
+    // RECORD; guarded by writer
+    private final BufferedWriter writer;
+
+    // REPLAY
+    private final List<Entry> sttEntries = new ArrayList<>();
+    // guarded by this
+    private final Map<String, Deque<Entry>> llmByFragment = new HashMap<>();
+    private final Map<String, Deque<Entry>> llmByText = new HashMap<>();
+
+    private final Counter llmHits;
+    private final Counter llmMisses;
+
+    public TrafficJournal(
+        final MeterRegistry meterRegistry,
+        @Value("${replay.mode:OFF}") final Mode mode,
+        @Value("${replay.file:replay/traffic.ndjson}") final Path file,
+        @Value("${replay.speed:1.0}") final double speed
+    ) throws IOException {
+        this.mode = mode;
+        this.file = file;
+        this.speed = speed;
+        this.writer = mode == Mode.RECORD ? openForRecord(file) : null;
+        if (mode == Mode.REPLAY) {
+            load(file);
+        }
+
+        this.llmHits = lookupCounter(meterRegistry, "hit");
+        this.llmMisses = lookupCounter(meterRegistry, "miss");
+    }
+
+    public boolean isRecording() {
+        return mode == Mode.RECORD;
+    }
+
+    public boolean isReplaying() {
+        return mode == Mode.REPLAY;
+    }
+
+    /**
+     * Входящее сообщение STT как есть
+     */
+    public void recordStt(final String message) {
+        if (isRecording()) {
+            append(new Entry(KIND_STT, elapsedMillis(), message, null, null, 0, null));
+        }
+    }
+
+    /**
+     * Идеи по одному фрагменту и время ответа GigaChat (для пакета — время всего запроса)
+     */
+    public void recordIdeas(final String text, final String context, final long latencyMillis,
+                            final List<Idea> ideas) {
+        if (isRecording()) {
+            append(new Entry(KIND_LLM, elapsedMillis(), null, fragmentKey(text, context), textKey(text),
+                latencyMillis, ideas));
+        }
+    }
+
+    /**
+     * Записанные сообщения STT с исходными интервалами (speed=0 — подряд)
+     */
+    public Flux<String> replayStt() {
+        if (speed <= 0) {
+            return Flux.fromIterable(sttEntries).map(Entry::message);
+        }
+        return Flux.defer(() -> {
+            final long start = System.nanoTime();
+            return Flux.fromIterable(sttEntries)
+                .concatMap(entry -> {
+                    final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    final long due = (long) (entry.at() / speed) - elapsed;
+                    return due > 0
+                        ? Mono.delay(Duration.ofMillis(due)).thenReturn(entry.message())
+                        : Mono.just(entry.message());
+                });
+        });
+    }
+
+    /**
+     * Записанные идеи фрагмента с записанной задержкой ответа; нет записи — пустой список
+     */
+    public Mono<List<Idea>> replayIdeas(final String text, final String context) {
+        final Entry entry = lookup(fragmentKey(text, context), textKey(text));
+        if (entry == null) {
+            llmMisses.increment();
+            log.debug("No recorded GigaChat answer for fragment, replaying no ideas: {} chars", text.length());
+            return Mono.just(List.of());
+        }
+        llmHits.increment();
+        final Mono<List<Idea>> ideas = Mono.just(entry.ideas() == null ? List.of() : entry.ideas());
+        return speed <= 0 ? ideas : ideas.delayElement(Duration.ofMillis((long) (entry.latency() / speed)));
+    }
+
+    private synchronized Entry lookup(final String fragmentKey, final String textKey) {
+        final Deque<Entry> byFragment = llmByFragment.get(fragmentKey);
+        final Deque<Entry> entries = byFragment != null ? byFragment : llmByText.get(textKey);
+        if (entries == null) {
+            return null;
+        }
+        // Один и тот же фрагмент мог уходить несколько раз: отдаём по порядку, последний — повторно
+        return entries.size() > 1 ? entries.pollFirst() : entries.peekFirst();
+    }
+
+    @Scheduled(fixedDelayString = "${replay.flush-interval-ms:1000}")
+    public void flush() {
+        if (writer == null) {
+            return;
+        }
+        synchronized (writer) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                log.error("Failed to flush traffic journal {}", file, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        synchronized (writer) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.error("Failed to close traffic journal {}", file, e);
+            }
+        }
+    }
+
+    private void append(final Entry entry) {
+        try {
+            final String line = objectMapper.writeValueAsString(entry);
+            synchronized (writer) {
+                writer.write(line);
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            log.error("Failed to append to traffic journal {}", file, e);
+        }
+    }
+
+    private void load(final Path path) throws IOException {
+        int llmEntries = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                final Entry entry = objectMapper.readValue(line, Entry.class);
+                if (KIND_STT.equals(entry.kind())) {
+                    sttEntries.add(withoutTiming(entry));
+                } else if (KIND_LLM.equals(entry.kind())) {
+                    llmByFragment.computeIfAbsent(entry.fragment(), k -> new ArrayDeque<>()).addLast(entry);
+                    llmByText.computeIfAbsent(entry.text(), k -> new ArrayDeque<>()).addLast(entry);
+                    llmEntries++;
+                }
+            }
+        }
+        log.info("Loaded traffic journal {}: {} STT messages, {} GigaChat fragments",
+            path, sttEntries.size(), llmEntries);
+    }
+
+    // Отметки времени STT из записи относятся к прошлому прогону: без них задержка конвейера
+    // считается от приёма final_text, то есть ровно та часть, что воспроизводится
+    private Entry withoutTiming(final Entry entry) throws IOException {
+        final JsonNode message = objectMapper.readTree(entry.message());
+        if (!(message instanceof ObjectNode node) || node.remove("timing") == null) {
+            return entry;
+        }
+        return new Entry(entry.kind(), entry.at(), objectMapper.writeValueAsString(node), null, null, 0, null);
+    }
+
+    private static BufferedWriter openForRecord(final Path path) throws IOException {
+        final Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (Files.exists(path) && Files.size(path) > 0) {
+            log.warn("Overwriting previous traffic recording {}", path);
+        }
+        log.info("Recording STT and GigaChat traffic to {}", path);
+        return Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNanos);
+    }
+
+    private static String fragmentKey(final String text, final String context) {
+        return hash(text + '\u0000' + (context == null ? "" : context));
+    }
+
+    private static String textKey(final String text) {
+        return hash(text);
+    }
+
+    // В журнале хранится только хэш: сам текст уже есть в записи STT
+    private static String hash(final String value) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter lookupCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("replay.llm.lookups")
+            .description("Replayed GigaChat fragments by lookup result")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Строка журнала. kind=stt: message; kind=llm: fragment/text — хэши фрагмента и текста,
+     * latency — мс ответа GigaChat, ideas — результат. at — мс от начала записи.
+     */
+    private record Entry(String kind, long at, String message, String fragment, String text, long latency,
+                         List<Idea> ideas) {}
+}
@@ -0,0 +1,15 @@
+package com.rybki.spring_boot.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * В запросе на создание события указан неизвестный движок извлечения идей
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnknownIdeaExtractorException extends RuntimeException {
+
+    public UnknownIdeaExtractorException(final String ideaExtractor) {
+        super("Unknown idea extractor: " + ideaExtractor);
+    }
+}
@@ -1,18 +1,23 @@
 package com.rybki.spring_boot.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class VoteService {
 
-    // Заглушка для регистрации голоса
+    private final EventObserverFeed eventObserverFeed;
+
+    // Заглушка для регистрации голоса; наблюдатели события видят голос сразу
     public Mono<Void> registerVote(final String clientId, final String eventId, final JsonNode voteData) {
-        return Mono.fromRunnable(() ->
-            log.info("Vote registered: clientId={}, eventId={}, data={}", clientId, eventId, voteData.toString())
-        );
+        return Mono.fromRunnable(() -> {
+            log.info("Vote registered: clientId={}, eventId={}, data={}", clientId, eventId, voteData.toString());
+            eventObserverFeed.publishVote(eventId, clientId, voteData);
+        });
     }
 }
@@ -1,4 +1,23 @@
 package com.rybki.spring_boot.util;
 
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
 public class BackoffUtil {
+
+    // Случайно уменьшает задержку на долю до jitterRatio, чтобы инстансы не просыпались одновременно
+    public static Duration withJitter(final Duration base, final double jitterRatio) {
+        if (base.isNegative() || base.isZero() || jitterRatio <= 0) {
+            return base.isNegative() ? Duration.ZERO : base;
+        }
+        final long baseMs = base.toMillis();
+        final long jitterMs = (long) (baseMs * Math.min(jitterRatio, 1.0) * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(baseMs - jitterMs);
+    }
+
+    // Экспоненциальная задержка attempt-й попытки (с нуля), ограниченная сверху
+    public static Duration exponential(final Duration initial, final Duration max, final int attempt) {
+        final long delayMs = initial.toMillis() << Math.min(attempt, 30);
+        return delayMs <= 0 || delayMs > max.toMillis() ? max : Duration.ofMillis(delayMs);
+    }
 }
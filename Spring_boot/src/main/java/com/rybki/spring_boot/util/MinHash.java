@@ -0,0 +1,59 @@
+package com.rybki.spring_boot.util;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * MinHash-сигнатуры по символьным шинглам нормализованного текста.
+ * Доля совпавших позиций двух сигнатур — оценка коэффициента Жаккара их множеств шинглов.
+ */
+public class MinHash {
+
+    private final int shingleSize;
+    private final long[] seeds;
+
+    public MinHash(final int numHashes, final int shingleSize, final long seed) {
+        this.shingleSize = shingleSize;
+        this.seeds = new SplittableRandom(seed).longs(numHashes).toArray();
+    }
+
+    public int numHashes() {
+        return seeds.length;
+    }
+
+    public long[] signature(final String text) {
+        final String normalized = TextUtil.normalize(text);
+        final long[] signature = new long[seeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+
+        final int last = Math.max(0, normalized.length() - shingleSize);
+        for (int start = 0; start <= last; start++) {
+            final int end = Math.min(normalized.length(), start + shingleSize);
+            final long shingle = mix(normalized.substring(start, end).hashCode());
+            for (int i = 0; i < seeds.length; i++) {
+                final long h = mix(shingle ^ seeds[i]);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    public static double similarity(final long[] a, final long[] b) {
+        int same = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return (double) same / a.length;
+    }
+
+    // Финализатор splitmix64: хорошо перемешивает биты дешёвого хэша
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,43 @@
+package com.rybki.spring_boot.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class TextUtil {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    public static final Set<String> STOP_WORDS = Set.of(
+        "и", "в", "во", "на", "не", "что", "как", "а", "но", "или", "то", "это", "бы", "же", "ли", "по",
+        "с", "со", "к", "ко", "у", "о", "об", "от", "до", "за", "из", "для", "при", "мы", "вы", "я", "он",
+        "она", "они", "нам", "нас", "вам", "их", "его", "её", "ее", "там", "тут", "так", "уже", "ещё", "еще",
+        "очень", "просто", "можно", "нужно", "надо", "будет", "был", "была", "было", "быть", "есть", "все",
+        "всё", "всех", "этот", "эта", "эти", "тоже", "также", "чтобы", "если", "когда", "потом", "ну", "вот"
+    );
+
+    // Нормализация: регистр, ё/е, пунктуация и пробелы не влияют на сравнение
+    public static String normalize(final String text) {
+        final String lower = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        return NON_WORD.matcher(lower).replaceAll(" ").trim();
+    }
+
+    // Слова нормализованного текста по порядку
+    public static List<String> words(final String text) {
+        final List<String> words = new ArrayList<>();
+        final Matcher matcher = WORD.matcher(normalize(text));
+        while (matcher.find()) {
+            words.add(matcher.group());
+        }
+        return words;
+    }
+
+    // Значимое слово: не служебное и длиннее двух букв
+    public static boolean isContentWord(final String word) {
+        return word.length() > 2 && !STOP_WORDS.contains(word);
+    }
+}
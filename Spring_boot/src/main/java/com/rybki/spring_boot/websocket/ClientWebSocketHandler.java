@@ -1,19 +1,30 @@
 package com.rybki.spring_boot.websocket;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rybki.spring_boot.model.domain.ClientSession;
+import com.rybki.spring_boot.model.domain.ReplayLog;
+import com.rybki.spring_boot.model.domain.ResumableClient;
+import com.rybki.spring_boot.model.domain.TraceContext;
+import com.rybki.spring_boot.service.SessionResumeService;
 import com.rybki.spring_boot.service.SessionService;
 import com.rybki.spring_boot.service.SttRoutingService;
 import com.rybki.spring_boot.service.VoteService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.CloseStatus;
 import org.springframework.web.reactive.socket.WebSocketHandler;
 import org.springframework.web.reactive.socket.WebSocketMessage;
 import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Slf4j
@@ -22,15 +33,21 @@ import reactor.core.publisher.Mono;
 public class ClientWebSocketHandler implements WebSocketHandler {
 
     private final SessionService sessionService;
+    private final SessionResumeService sessionResumeService;
     private final SttRoutingService sttRoutingService;
     private final VoteService voteService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Доля сессий с трассировкой; остальные не платят за неё ничем
+    @Value("${tracing.sample-probability:0.1}")
+    private double traceSampleProbability;
+
     @Override
     public @NotNull Mono<Void> handle(@NotNull final WebSocketSession session) {
         log.info("Client connected: sessionId={}", session.getId());
 
         return session.receive()
+            .doOnNext(message -> sessionService.markRead(session))
             .flatMap(message -> switch (message.getType()) {
                 case TEXT -> handleTextMessage(session, message);
                 case BINARY -> handleBinaryMessage(session, message);
@@ -40,12 +57,14 @@ public class ClientWebSocketHandler implements WebSocketHandler {
             .then();
     }
 
-    private Mono<Void> handleTextMessage(final WebSocketSession session, final WebSocketMessage message) {
+    Mono<Void> handleTextMessage(final WebSocketSession session, final WebSocketMessage message) {
+        sessionService.markMessage(session);
         return Mono.fromCallable(() -> objectMapper.readTree(message.getPayloadAsText()))
             .flatMap(jsonNode -> {
                 final String type = jsonNode.path("type").asText();
                 return switch (type) {
                     case "start" -> handleStart(session, jsonNode);
+                    case "resume" -> handleResume(session, jsonNode);
                     case "end" -> handleEnd(session);
                     case "vote" -> handleVote(session, jsonNode);
                     default -> {
@@ -67,17 +86,71 @@ public class ClientWebSocketHandler implements WebSocketHandler {
         final String eventId =
             jsonNode.has("eventId") ? jsonNode.get("eventId").asText() : UUID.randomUUID().toString();
 
-        return sessionService.register(session, clientId, eventId)
-            .doOnSuccess(v -> log.info("Start: clientId={}, eventId={}", clientId, eventId))
+        final TraceContext trace = TraceContext.sample(traceSampleProbability).orElse(null);
+        return sessionService.register(session, clientId, eventId, trace)
+            .then(Mono.fromCallable(() -> sessionResumeService.attachOnStart(session.getId(), clientId, eventId)))
+            .flatMap(client -> sendJson(session, Map.of(
+                "type", "started",
+                "clientId", clientId,
+                "eventId", eventId,
+                "resumeToken", client.getResumeToken(),
+                "lastSeq", client.getReplayLog().lastSeq()
+            )))
+            .doOnSuccess(v -> log.info("Start: clientId={}, eventId={}, traceId={}",
+                clientId, eventId, trace == null ? null : trace.traceId()))
             .then();
     }
 
+    /**
+     * Возобновление после обрыва: {"type":"resume","resumeToken":"...","lastSeq":N}.
+     * STT-поток клиента не перезапускается, пропущенные сообщения (seq > lastSeq) дотправляются.
+     */
+    private Mono<Void> handleResume(final WebSocketSession session, final JsonNode jsonNode) {
+        final String token = jsonNode.path("resumeToken").asText(null);
+        final long lastSeq = jsonNode.path("lastSeq").asLong(0);
+
+        final ResumableClient client = sessionResumeService.resume(token, session.getId()).orElse(null);
+        if (client == null) {
+            log.info("Resume rejected: sessionId={}", session.getId());
+            return sendJson(session, Map.of("type", "resume_failed"));
+        }
+
+        final String clientId = client.getClientId();
+        final String eventId = client.getEventId();
+
+        // Старая сессия могла ещё не закрыться (полуоткрытое соединение) — вытесняем её
+        final Mono<Void> dropStale = sessionService.getSession(eventId, clientId)
+            .filter(stale -> !stale.getId().equals(session.getId()))
+            .flatMap(stale -> sessionService.evict(stale)
+                .then(stale.close(CloseStatus.POLICY_VIOLATION.withReason("Session resumed elsewhere"))))
+            .onErrorResume(e -> Mono.empty());
+
+        return dropStale
+            .then(sessionService.register(session, clientId, eventId,
+                TraceContext.sample(traceSampleProbability).orElse(null)))
+            .then(Mono.defer(() -> {
+                final List<ReplayLog.Entry> missed = sessionResumeService.replayAfter(client, lastSeq);
+                final Map<String, Object> ack = new LinkedHashMap<>();
+                ack.put("type", "resumed");
+                ack.put("clientId", clientId);
+                ack.put("eventId", eventId);
+                ack.put("resumeToken", client.getResumeToken());
+                ack.put("replayed", missed.size());
+                log.info("Resume: clientId={}, eventId={}, replaying {} messages", clientId, eventId, missed.size());
+                return session.send(Flux.concat(
+                    Mono.fromCallable(() -> session.textMessage(objectMapper.writeValueAsString(ack))),
+                    Flux.fromIterable(missed).map(entry -> session.textMessage(entry.payload()))
+                ));
+            }));
+    }
+
     private Mono<Void> handleEnd(final WebSocketSession session) {
-        return sessionService.getSessionData(session)
-            .flatMap(cs -> sttRoutingService.notifyEnd(cs.clientId(), cs.eventId())
-                .then(sessionService.unregister(session))
-                .doOnSuccess(v -> log.info("End: sessionId={}", session.getId()))
-            )
+        return sessionService.evict(session)
+            .flatMap(cs -> {
+                sessionResumeService.release(cs);
+                return sttRoutingService.notifyEnd(cs.clientId(), cs.eventId())
+                    .doOnSuccess(v -> log.info("End: sessionId={}", session.getId()));
+            })
             .then();
     }
 
@@ -94,11 +167,14 @@ public class ClientWebSocketHandler implements WebSocketHandler {
     }
 
     private Mono<Void> handleBinaryMessage(final WebSocketSession session, final WebSocketMessage message) {
+        // Начало отсчёта задержки "аудио → идея"; STT вернёт эту отметку вместе с final_text
+        final long receivedAtMillis = System.currentTimeMillis();
         return sessionService.getSessionData(session)
             .flatMap(cs -> {
                 final byte[] bytes = new byte[message.getPayload().readableByteCount()];
                 message.getPayload().read(bytes);
-                return sttRoutingService.forwardAudio(cs.clientId(), cs.eventId(), bytes)
+                cs.activity().markAudio(bytes.length);
+                return sttRoutingService.forwardAudio(cs.clientId(), cs.eventId(), bytes, receivedAtMillis, cs.trace())
                     .doOnError(
                         e -> log.error("Failed to forward audio: clientId={}, eventId={}", cs.clientId(), cs.eventId(),
                             e));
@@ -110,10 +186,23 @@ public class ClientWebSocketHandler implements WebSocketHandler {
     }
 
     private void handleDisconnect(final WebSocketSession session) {
-        sessionService.getSessionData(session)
-            .flatMap(cs -> sttRoutingService.notifyEnd(cs.clientId(), cs.eventId()))
-            .then(sessionService.unregister(session))
+        // evict атомарен: если сессию уже убрал reaper или "end", disconnect в STT повторно не уйдёт
+        sessionService.evict(session)
+            .flatMap(this::detachOrEnd)
             .doOnSuccess(v -> log.info("Client disconnected: sessionId={}", session.getId()))
             .subscribe();
     }
+
+    // Возобновляемый клиент уходит в grace-окно, остальным сразу закрываем STT-поток
+    private Mono<Void> detachOrEnd(final ClientSession cs) {
+        if (sessionResumeService.detach(cs)) {
+            return Mono.empty();
+        }
+        return sttRoutingService.notifyEnd(cs.clientId(), cs.eventId());
+    }
+
+    private Mono<Void> sendJson(final WebSocketSession session, final Map<String, Object> payload) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(payload))
+            .flatMap(json -> session.send(Mono.just(session.textMessage(json))));
+    }
 }
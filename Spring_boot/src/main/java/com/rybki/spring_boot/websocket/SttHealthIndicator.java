@@ -0,0 +1,57 @@
+package com.rybki.spring_boot.websocket;
+
+import com.rybki.spring_boot.service.IdeaIngestionQueue;
+import com.rybki.spring_boot.service.SttRoutingService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Состояние конвейера STT для /actuator/health (компонент "stt").
+ * <p>
+ * DOWN — нет соединения с STT; SATURATED — соединение есть, но очередь отправки в STT
+ * или очередь обработки текстов близка к пределу: сигнал автоскейлеру и балансировщику
+ * не давать инстансу новых участников.
+ */
+@Component
+@RequiredArgsConstructor
+public class SttHealthIndicator implements HealthIndicator {
+
+    public static final Status SATURATED = new Status("SATURATED", "STT pipeline is near capacity");
+
+    private final SttWebSocketClient sttWebSocketClient;
+    private final SttRoutingService sttRoutingService;
+    private final IdeaIngestionQueue ideaIngestionQueue;
+
+    @Value("${stt.health.max-queue-depth:1000}")
+    private int maxQueueDepth;
+
+    @Value("${stt.health.max-ingest-fill:0.8}")
+    private double maxIngestFill;
+
+    @Override
+    public Health health() {
+        final int queueDepth = sttWebSocketClient.getQueueDepth();
+        final int ingestQueued = ideaIngestionQueue.getQueued();
+        final double ingestFill = (double) ingestQueued / ideaIngestionQueue.getMaxQueued();
+
+        final Health.Builder builder;
+        if (!sttWebSocketClient.isConnected()) {
+            builder = Health.down().withDetail("reconnectBackoffMs", sttWebSocketClient.getCurrentBackoffMs());
+        } else if (queueDepth >= maxQueueDepth || ingestFill >= maxIngestFill) {
+            builder = Health.status(SATURATED);
+        } else {
+            builder = Health.up();
+        }
+        return builder
+            .withDetail("queueDepth", queueDepth)
+            .withDetail("reconnects", sttWebSocketClient.getReconnects())
+            .withDetail("activeStreams", sttRoutingService.getActiveStreams())
+            .withDetail("ingestQueued", ingestQueued)
+            .withDetail("ingestRunning", ideaIngestionQueue.getRunning())
+            .build();
+    }
+}
@@ -2,35 +2,116 @@ package com.rybki.spring_boot.websocket;
 
 import java.net.URI;
 import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import com.rybki.spring_boot.service.PipelineMetrics;
 import com.rybki.spring_boot.service.SttResponseHandler;
+import com.rybki.spring_boot.service.TrafficJournal;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.reactive.socket.WebSocketMessage;
 import org.springframework.web.reactive.socket.WebSocketSession;
 import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 import reactor.core.scheduler.Schedulers;
 
-
+/**
+ * Единственное соединение бэкенда с STT: очередь отправки, приём final_text, переподключение.
+ * Метрики stt.client.* регистрируются через {@link MeterBinder} (бин подхватывается Spring Boot).
+ * В режиме воспроизведения ({@link TrafficJournal}) к STT не подключается: final_text идут из журнала.
+ */
 @Slf4j
 @RequiredArgsConstructor
-public class SttWebSocketClient {
+public class SttWebSocketClient implements MeterBinder {
 
     private final String sttUrl;
     private final Duration timeout;
     private final Duration reconnectInitialDelay;
     private final Duration reconnectMaxDelay;
+    // Сколько сообщений может одновременно ждать приёма в обработку (придержанные фильтром — тоже)
+    private final int receiveConcurrency;
     private final SttResponseHandler responseHandler;
+    private final PipelineMetrics pipelineMetrics;
+    private final TrafficJournal trafficJournal;
 
     private final ReactorNettyWebSocketClient client = new ReactorNettyWebSocketClient();
     private final AtomicLong currentBackoffMs = new AtomicLong();
-    private final Sinks.Many<String> outQueue = Sinks.many().unicast().onBackpressureBuffer();
+    private final Sinks.Many<Outgoing> outQueue = Sinks.many().unicast().onBackpressureBuffer();
 
     private volatile WebSocketSession session;
     private volatile boolean running;
+    private volatile boolean replaying;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong sendTimeouts = new AtomicLong();
+    private final AtomicLong droppedNotConnected = new AtomicLong();
+    private final AtomicLong droppedSendFailed = new AtomicLong();
+    private final AtomicLong droppedEnqueueFailed = new AtomicLong();
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("stt.client.connected", this, c -> c.isConnected() ? 1 : 0)
+            .description("1 while the STT WebSocket is open")
+            .register(registry);
+        Gauge.builder("stt.client.queue.depth", queued, AtomicInteger::get)
+            .description("Messages waiting to be sent to STT")
+            .register(registry);
+        Gauge.builder("stt.client.reconnect.backoff", currentBackoffMs,
+                ms -> isConnected() ? 0 : ms.get() / 1000.0)
+            .description("Current reconnect delay, 0 while connected")
+            .baseUnit("seconds")
+            .register(registry);
+        FunctionCounter.builder("stt.client.reconnects", reconnects, AtomicLong::get)
+            .description("Scheduled reconnects to STT")
+            .register(registry);
+        FunctionCounter.builder("stt.client.bytes", bytesSent, AtomicLong::get)
+            .description("WebSocket payload bytes exchanged with STT")
+            .tag("direction", "sent")
+            .baseUnit("bytes")
+            .register(registry);
+        FunctionCounter.builder("stt.client.bytes", bytesReceived, AtomicLong::get)
+            .description("WebSocket payload bytes exchanged with STT")
+            .tag("direction", "received")
+            .baseUnit("bytes")
+            .register(registry);
+        FunctionCounter.builder("stt.client.send.timeouts", sendTimeouts, AtomicLong::get)
+            .description("Sends to STT that exceeded the send timeout")
+            .register(registry);
+        droppedCounter(registry, "not_connected", droppedNotConnected);
+        droppedCounter(registry, "send_failed", droppedSendFailed);
+        droppedCounter(registry, "enqueue_failed", droppedEnqueueFailed);
+    }
+
+    public boolean isConnected() {
+        if (replaying) {
+            return true;
+        }
+        final WebSocketSession s = session;
+        return s != null && s.isOpen();
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    public long getCurrentBackoffMs() {
+        return currentBackoffMs.get();
+    }
 
     /**
      * Запуск клиента
@@ -41,6 +122,11 @@ public class SttWebSocketClient {
         }
 
         running = true;
+        if (trafficJournal.isReplaying()) {
+            replaying = true;
+            startReplay();
+            return;
+        }
         currentBackoffMs.set(reconnectInitialDelay.toMillis());
         connect();
         startSenderLoop();
@@ -63,8 +149,15 @@ public class SttWebSocketClient {
      * Отправка JSON в STT
      */
     public void sendToStt(final String json) {
-        final Sinks.EmitResult result = outQueue.tryEmitNext(json);
+        // При воспроизведении аудио и подтверждения отправлять некуда
+        if (replaying) {
+            return;
+        }
+        queued.incrementAndGet();
+        final Sinks.EmitResult result = outQueue.tryEmitNext(new Outgoing(json, System.nanoTime()));
         if (result.isFailure()) {
+            queued.decrementAndGet();
+            droppedEnqueueFailed.incrementAndGet();
             log.warn("Failed to enqueue STT message: {}", result);
         }
     }
@@ -108,6 +201,7 @@ public class SttWebSocketClient {
         }
 
         final long delay = currentBackoffMs.get();
+        reconnects.incrementAndGet();
         log.info("Reconnecting to STT in {} ms", delay);
 
         Mono.delay(Duration.ofMillis(delay), Schedulers.boundedElastic())
@@ -121,16 +215,37 @@ public class SttWebSocketClient {
      * Получение сообщений от STT
      */
     private Mono<Void> startReceiveLoop(final WebSocketSession ws) {
-        return ws.receive()
-            .map(WebSocketMessage::getPayloadAsText)
-            .doOnNext(msg -> {
-                log.debug("Received from STT: {}", msg);
-                try {
-                    responseHandler.handle(msg);
-                } catch (final Exception e) {
-                    log.error("Error while handling STT message", e);
-                }
+        return handleIncoming(ws.receive()
+            .map(message -> {
+                bytesReceived.addAndGet(message.getPayload().readableByteCount());
+                return message.getPayloadAsText();
             })
+            .doOnNext(trafficJournal::recordStt));
+    }
+
+    /**
+     * Воспроизведение записанных сообщений STT через тот же обработчик
+     */
+    private void startReplay() {
+        log.info("Replaying recorded STT traffic instead of connecting to {}", sttUrl);
+        handleIncoming(trafficJournal.replayStt())
+            .doFinally(sig -> log.info("STT replay finished ({})", sig))
+            .subscribe();
+    }
+
+    private Mono<Void> handleIncoming(final Flux<String> messages) {
+        return messages
+            // Пока очередь обработки полна, новые сообщения не запрашиваются и сокет не читается
+            .flatMap(msg -> {
+                log.debug("Received from STT: {}", msg);
+                return responseHandler.handle(msg)
+                    .doOnNext(this::sendToStt)
+                    .then()
+                    .onErrorResume(e -> {
+                        log.error("Error while handling STT message", e);
+                        return Mono.empty();
+                    });
+            }, receiveConcurrency)
             .onErrorContinue((err, obj) ->
                 log.error("Error receiving message from STT", err))
             .then();
@@ -142,19 +257,39 @@ public class SttWebSocketClient {
     private void startSenderLoop() {
         outQueue.asFlux()
             .flatMap(msg -> {
+                queued.decrementAndGet();
                 final WebSocketSession s = session;
                 if (s != null && s.isOpen()) {
-                    return s.send(Mono.just(s.textMessage(msg)))
+                    pipelineMetrics.recordStage(PipelineMetrics.STAGE_STT_SEND,
+                        System.nanoTime() - msg.enqueuedAtNanos());
+                    final WebSocketMessage message = s.textMessage(msg.json());
+                    final int size = message.getPayload().readableByteCount();
+                    return s.send(Mono.just(message))
                         .timeout(timeout)
+                        .doOnSuccess(v -> bytesSent.addAndGet(size))
                         .onErrorResume(e -> {
+                            if (e instanceof TimeoutException) {
+                                sendTimeouts.incrementAndGet();
+                            }
+                            droppedSendFailed.incrementAndGet();
                             log.warn("Failed to send message to STT", e);
                             return Mono.empty();
                         });
                 } else {
+                    droppedNotConnected.incrementAndGet();
                     log.warn("STT session not ready — message dropped");
                     return Mono.empty();
                 }
             }, 1) // concurrency = 1 → порядок сохранён
             .subscribe();
     }
+
+    private static void droppedCounter(final MeterRegistry registry, final String reason, final AtomicLong count) {
+        FunctionCounter.builder("stt.client.dropped", count, AtomicLong::get)
+            .description("Messages to STT that were never sent")
+            .tag("reason", reason)
+            .register(registry);
+    }
+
+    private record Outgoing(String json, long enqueuedAtNanos) {}
 }
@@ -0,0 +1,75 @@
+package com.rybki.spring_boot.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rybki.spring_boot.model.dto.NnResponseDto;
+import org.junit.jupiter.api.Test;
+
+class IncrementalIdeasParserTest {
+
+    private static final String RESPONSE = """
+        ```json
+        {"status": "success", "ideas": [
+          {"id": "1", "title": "Кофе \\"по-турецки\\"", "description": "путь C:\\\\tmp, \\u0442ест\\n", "meta": {"x": [1]}},
+          {"id": "2", "title": "Второй", "description": "{не объект}"}
+        ], "meta": {"total_ideas": 2, "source_text_length": 10}}
+        ```
+        """;
+
+    private final IncrementalIdeasParser parser = new IncrementalIdeasParser(new ObjectMapper());
+
+    @Test
+    void parsesIdeasWhenEveryCharacterIsASeparateChunk() {
+        final List<NnResponseDto.NnIdea> ideas = new ArrayList<>();
+        for (int i = 0; i < RESPONSE.length(); i++) {
+            ideas.addAll(parser.feed(RESPONSE.substring(i, i + 1)));
+        }
+        parser.finish();
+
+        assertThat(ideas).extracting(NnResponseDto.NnIdea::id).containsExactly("1", "2");
+        assertThat(ideas.get(0).title()).isEqualTo("Кофе \"по-турецки\"");
+        assertThat(ideas.get(0).description()).isEqualTo("путь C:\\tmp, тест\n");
+        assertThat(ideas.get(1).description()).isEqualTo("{не объект}");
+    }
+
+    @Test
+    void returnsIdeaAsSoonAsItsObjectCloses() {
+        final int split = RESPONSE.indexOf("{\"id\": \"2\"");
+
+        assertThat(parser.feed(RESPONSE.substring(0, split)))
+            .extracting(NnResponseDto.NnIdea::id).containsExactly("1");
+        assertThat(parser.feed(RESPONSE.substring(split)))
+            .extracting(NnResponseDto.NnIdea::id).containsExactly("2");
+        parser.finish();
+    }
+
+    @Test
+    void returnsSeveralIdeasClosedInOneDelta() {
+        assertThat(parser.feed(RESPONSE))
+            .extracting(NnResponseDto.NnIdea::id).containsExactly("1", "2");
+        parser.finish();
+    }
+
+    @Test
+    void finishFailsOnTruncatedInput() {
+        final String truncated = RESPONSE.substring(0, RESPONSE.indexOf("{\"id\": \"2\"") + 5);
+
+        assertThat(parser.feed(truncated)).extracting(NnResponseDto.NnIdea::id).containsExactly("1");
+        assertThatThrownBy(parser::finish)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("truncated");
+    }
+
+    @Test
+    void finishFailsWithoutJsonObject() {
+        assertThat(parser.feed("Идей не найдено")).isEmpty();
+        assertThatThrownBy(parser::finish)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("no JSON object");
+    }
+}